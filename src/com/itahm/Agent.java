@@ -11,6 +11,7 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -21,6 +22,8 @@ import com.itahm.SNMPAgent;
 import com.itahm.ICMPAgent;
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
+import com.itahm.json.RollingFile;
+import com.itahm.json.RollingLog;
 import com.itahm.command.Command;
 import com.itahm.command.Commander;
 import com.itahm.http.HTTPException;
@@ -35,6 +38,8 @@ import com.itahm.table.Monitor;
 import com.itahm.table.Profile;
 import com.itahm.table.Table;
 import com.itahm.enterprise.Enterprise;
+import com.itahm.util.TopTable;
+import com.itahm.util.Util;
 
 public class Agent {
 
@@ -66,6 +71,7 @@ public class Agent {
 	private static Log log;
 	private static SNMPAgent snmp;
 	private static ICMPAgent icmp;
+	private static RollingLog rollingLog;
 	public final static Enterprise enterprise = new Enterprise();
 	private final HTTPServer server;
 	private static JSONObject config;
@@ -106,8 +112,15 @@ public class Agent {
 	
 	private static void initialize() throws IOException {
 		try {
+			// node 보다 먼저 replay
+			if (getWALSync() > 0) {
+				rollingLog = new RollingLog(new File(dataRoot, "wal"), getWALSync());
+				
+				RollingFile.setLog(rollingLog);
+			}
+			
 			snmp = new SNMPAgent(dataRoot);
-			icmp = new ICMPAgent();
+			icmp = new ICMPAgent(dataRoot);
 		} catch (IOException ioe) {
 			close();
 			
@@ -213,6 +226,11 @@ public class Agent {
 		}
 		
 		validIFType = ts.size() == 0? null: ts;
+		
+		// 시작시에는 아직 node 가 없음
+		if (snmp != null) {
+			snmp.invalidatePlan();
+		}
 	}
 	
 	public static boolean isValidIFType(int type) {
@@ -237,6 +255,17 @@ public class Agent {
 		}
 	}
 	
+	// trap
+	public static void log(List<JSONObject> list, boolean broadcast) {
+		log.write(list);
+		
+		if (broadcast) {
+			for (JSONObject data : list) {
+				sendEvent(data);
+			}
+		}
+	}
+	
 	public static void sendEvent(String message) {
 		if (config.has("sms") && config.getBoolean("sms")) {
 			enterprise.sendEvent(message);
@@ -299,6 +328,30 @@ public class Agent {
 		snmp.testNode(ip, id);
 	}
 	
+	public static JSONObject search(String network, int mask) throws IOException {
+		return snmp.search(network, mask);
+	}
+	
+	public static JSONObject getDiscovery() {
+		return snmp.getDiscovery();
+	}
+	
+	public static JSONObject getPhase(String ip, int count) {
+		return snmp.getPhase(ip, count);
+	}
+	
+	public static void clearPhase() {
+		snmp.clearPhase();
+	}
+	
+	public static JSONObject getSnapshot() {
+		return snmp.getSnapshot();
+	}
+	
+	public static JSONObject getTrap() {
+		return snmp.getTrap();
+	}
+	
 	public static boolean removeICMPNode(String ip) {
 		return icmp.removeNode(ip);
 	}
@@ -333,6 +386,126 @@ public class Agent {
 		return config.getLong("requestTimer");
 	}
 	
+	/**
+	 * descriptive column (slow tier) 재수집 주기
+	 */
+	public static long getStaticTimer() {
+		return config.getLong("staticTimer");
+	}
+	
+	/**
+	 * 동시에 응답을 기다리는 SNMP PDU 수, 0 이면 제한 없음
+	 */
+	public static int getMaxInflight() {
+		return config.getInt("maxInflight");
+	}
+	
+	/**
+	 * 초당 전송하는 SNMP PDU 수, 0 이면 제한 없음
+	 */
+	public static int getMaxPPS() {
+		return config.getInt("maxPPS");
+	}
+	
+	public static void setAdmission() {
+		snmp.setAdmission();
+	}
+	
+	public static JSONObject getBudget() {
+		return snmp.getBudget();
+	}
+	
+	/**
+	 * 초당 ICMP 확인 수
+	 */
+	public static int getICMPRate() {
+		return config.getInt("icmpRate");
+	}
+	
+	public static void setICMPRate() {
+		icmp.setRate();
+	}
+	
+	public static JSONObject getICMP() {
+		return icmp.getStatus();
+	}
+	
+	/**
+	 * 응답 상태가 바뀌었다고 판단하기 위한 연속 확인 횟수
+	 */
+	public static int getFlapCount() {
+		return config.getInt("flapCount");
+	}
+	
+	/**
+	 * 상태 변화 penalty 의 반감 주기, 0 이면 억제하지 않음 (기본)
+	 * 억제하는 것은 복구 뿐이며 장애는 항상 알린다
+	 */
+	public static long getFlapHalfLife() {
+		return config.getLong("flapHalfLife");
+	}
+	
+	/**
+	 * node 파일과 monitor table 기록 주기
+	 */
+	public static long getSnapshotTimer() {
+		return config.getLong("snapshotTimer");
+	}
+	
+	/**
+	 * RollingFile write-ahead log 의 fsync 주기, 0 이면 사용하지 않음, 재시작 후 적용
+	 */
+	public static long getWALSync() {
+		return config.getLong("walSync");
+	}
+	
+	public static JSONObject getRollingLog() {
+		return rollingLog == null? null: rollingLog.getStatus();
+	}
+	
+	/**
+	 * true 이면 매 SNMP 요청 전에 ICMP 로 도달 가능성 확인,
+	 * false 이면 SNMP 응답으로 판단하고 SNMP 실패시에만 ICMP 확인
+	 */
+	public static boolean isPrecheck() {
+		return config.getBoolean("precheck");
+	}
+	
+	/**
+	 * GETBULK max-repetitions, 0 이면 GETNEXT 로 walk
+	 */
+	public static int getMaxRepetitions() {
+		return config.getInt("maxRepetitions");
+	}
+	
+	/**
+	 * process 목록 수집 주기 (요청 주기 단위), 기본 1 은 매 주기, 0 이면 수집하지 않음. device, profile 의 process 가 우선
+	 */
+	public static int getProcessInterval() {
+		return config.getInt("process");
+	}
+	
+	/**
+	 * network 탐색시 초당 packet 수
+	 */
+	public static int getDiscoveryRate() {
+		return config.getInt("discoveryRate");
+	}
+	
+	/**
+	 * SNMP UDP transport 수, 재시작 후 적용
+	 */
+	public static int getTransportCount() {
+		return config.getInt("transport");
+	}
+	
+	/**
+	 * SNMP, ICMP 재시도 횟수, 재시도 마다 timeout 두배
+	 */
+	public static int getRetry() {
+		return config.getInt("retry");
+	}
+	
 	public static boolean addUSM(JSONObject usm) {
 		return snmp.addUSM(usm);
 	}
@@ -349,7 +522,12 @@ public class Agent {
 		SNMPNode node = snmp.getNode(data.getString("ip"));
 		
 		if (node == null) {
-			return null;
+			return icmp.getData(data.getString("ip"),
+				data.getString("database"),
+				String.valueOf(data.getInt("index")),
+				data.getLong("start"),
+				data.getLong("end"),
+				data.has("summary")? data.getBoolean("summary"): false);
 		}
 		
 		return node.getData(data.getString("database"),
@@ -371,6 +549,12 @@ public class Agent {
 		}
 		
 		node.setInterface(device.has("ifSpeed")? device.getJSONObject("ifSpeed"): new JSONObject());
+		
+		snmp.setProcess(device.getString("ip"));
+	}
+	
+	public static JSONObject getProcess(String ip, boolean request) {
+		return snmp.getProcess(ip, request);
 	}
 	
 	public static JSONObject getNodeData(String ip, boolean offline) {
@@ -385,6 +569,17 @@ public class Agent {
 		return snmp.getTop(count);
 	}
 	
+	/**
+	 * SNMP 가 아닌 node 의 top 제출
+	 */
+	public static void submitTop(String ip, SNMPAgent.Resource resource, TopTable.Value value) {
+		snmp.submitTop(ip, resource, value);
+	}
+	
+	public static void removeTop(String ip) {
+		snmp.removeTop(ip);
+	}
+	
 	public static String report(long start, long end) throws IOException {
 		return log.read(start, end);
 	}
@@ -417,6 +612,22 @@ public class Agent {
 		if (icmp != null) {
 			icmp.close();
 		}
+		
+		if (rollingLog != null) {
+			RollingFile.setLog(null);
+			
+			rollingLog.close();
+			
+			rollingLog = null;
+		}
+		
+		if (tables.containsKey(Table.Name.MONITOR)) {
+			try {
+				getTable(Table.Name.MONITOR).flush();
+			} catch (IOException ioe) {
+				syslog(Util.EToString(ioe));
+			}
+		}
 	}
 	
 	public Response executeRequest(Request request, JSONObject data) {		
@@ -495,6 +706,7 @@ public class Agent {
 		.put("version", VERSION)
 		.put("load", batch.load)
 		.put("resource", snmp.getResourceCount())
+		.put("lag", snmp.getLag())
 		.put("usage", batch.lastDiskUsage)
 		.put("java", System.getProperty("java.version"))
 		.put("path", root.getAbsoluteFile().toString())
@@ -549,6 +761,12 @@ public class Agent {
 			case "DEBUG":
 				isDebug = true;
 				
+				break;
+			case "VIRTUAL":
+				if (!Util.setVirtualThread(true)) {
+					System.out.println("Virtual thread is not supported, platform thread will be used.");
+				}
+				
 				break;
 			case "PATH":
 				path = new File(args[++i]);
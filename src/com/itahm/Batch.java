@@ -10,6 +10,7 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import com.itahm.json.JSONObject;
+import com.itahm.json.SegmentFile;
 
 public class Batch {
 	private final static int QUEUE_SIZE = 24;
@@ -84,6 +85,9 @@ public class Batch {
 														size += file.length();
 													}
 												}
+												
+												size += SegmentFile.getFile(index, c.getTimeInMillis(), SegmentFile.DATA).length();
+												size += SegmentFile.getFile(index, c.getTimeInMillis(), SegmentFile.SUMMARY).length();
 											}
 										}
 									}
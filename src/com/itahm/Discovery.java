@@ -0,0 +1,174 @@
+package com.itahm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+import com.itahm.json.JSONArray;
+import com.itahm.json.JSONObject;
+import com.itahm.util.Network;
+import com.itahm.util.RateLimiter;
+import com.itahm.util.Util;
+
+/**
+ * network 탐색.
+ * 초당 packet 수와 동시에 진행중인 host 수를 제한하며,
+ * ICMP 로 응답하는 host 에만 모든 profile 로 동시에 SNMP 요청한다.
+ * 등록된 node 는 TestNode 가 log 로 알리고, 진행 상태는 getStatus 로 조회한다.
+ */
+public class Discovery implements Runnable, Closeable {
+	
+	private final static int MAX_INFLIGHT = 256;
+	private final static int LIVENESS_TIMEOUT = 1000;
+	
+	private final SNMPAgent agent;
+	private final String network;
+	private final int mask;
+	private final Iterator<String> it;
+	private final long total;
+	private final RateLimiter limiter;
+	private final Semaphore inflight = new Semaphore(MAX_INFLIGHT);
+	private final ExecutorService executor;
+	private final List<String> found = new ArrayList<>();
+	private final long start = System.currentTimeMillis();
+	private long end = 0;
+	private long probed = 0;
+	private long alive = 0;
+	private volatile boolean isClosed = false;
+	
+	/**
+	 * 
+	 * @param agent
+	 * @param network
+	 * @param mask
+	 * @param rate 초당 packet 수
+	 * @throws IOException
+	 */
+	public Discovery(SNMPAgent agent, String network, int mask, int rate) throws IOException {
+		this.agent = agent;
+		this.network = network;
+		this.mask = mask;
+		this.it = new Network(InetAddress.getByName(network).getAddress(), mask).iterator();
+		this.total = Math.max(0, (1L << (32 - Math.max(0, Math.min(32, mask)))) -2);
+		this.limiter = new RateLimiter(Math.max(1, rate));
+		this.executor = Util.newExecutor(MAX_INFLIGHT, "ITAhM Discovery Worker");
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (!this.isClosed && this.it.hasNext()) {
+				final String ip = this.it.next();
+				
+				this.inflight.acquire();
+				
+				this.executor.execute(new Runnable() {
+					
+					@Override
+					public void run() {
+						probe(ip);
+					}
+					
+				});
+			}
+			
+			// 진행중인 host 가 모두 끝날 때 까지
+			this.inflight.acquire(MAX_INFLIGHT);
+		} catch (InterruptedException ie) {
+		}
+		finally {
+			this.executor.shutdownNow();
+			
+			synchronized(this) {
+				this.end = System.currentTimeMillis();
+			}
+		}
+	}
+	
+	private void probe(final String ip) {
+		try {
+			if (this.isClosed || this.agent.hasNode(ip)) {
+				onDone();
+				
+				return;
+			}
+			
+			this.limiter.acquire(1);
+			
+			if (!InetAddress.getByName(ip).isReachable(LIVENESS_TIMEOUT)) {
+				onDone();
+				
+				return;
+			}
+			
+			synchronized(this) {
+				this.alive++;
+			}
+			
+			// profile 마다 하나의 packet
+			this.limiter.acquire(Math.max(1, this.agent.getProfileCount()));
+			
+			this.agent.testNode(new TestNode(this.agent, ip, null, Agent.DEF_TIMEOUT) {
+				
+				@Override
+				public void onSuccess(String profileName) {
+					super.onSuccess(profileName);
+					
+					synchronized(Discovery.this) {
+						found.add(ip);
+					}
+					
+					onDone();
+				}
+				
+				@Override
+				public void onFailure(int status) {
+					super.onFailure(status);
+					
+					onDone();
+				}
+			});
+		} catch (IOException | InterruptedException e) {
+			onDone();
+		}
+	}
+	
+	private void onDone() {
+		synchronized(this) {
+			this.probed++;
+		}
+		
+		this.inflight.release();
+	}
+	
+	public synchronized boolean isComplete() {
+		return this.end > 0;
+	}
+	
+	/**
+	 * 
+	 * @return 탐색 진행 상태와 발견된 node
+	 */
+	public synchronized JSONObject getStatus() {
+		return new JSONObject()
+			.put("network", this.network)
+			.put("mask", this.mask)
+			.put("total", this.total)
+			.put("probed", this.probed)
+			.put("alive", this.alive)
+			.put("found", new JSONArray(this.found))
+			.put("start", this.start)
+			.put("end", this.end);
+	}
+	
+	@Override
+	public void close() {
+		this.isClosed = true;
+	}
+
+}
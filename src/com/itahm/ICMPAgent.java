@@ -1,28 +1,57 @@
 package com.itahm;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
 
 import com.itahm.icmp.ICMPListener;
 import com.itahm.icmp.ICMPNode;
+import com.itahm.icmp.ICMPSweeper;
+import com.itahm.icmp.Prober;
 import com.itahm.table.Table;
+import com.itahm.util.FlapDamper;
 import com.itahm.util.Util;
+import com.itahm.util.WheelTimer;
 
 public class ICMPAgent implements ICMPListener, Closeable {
 	
 	private final static int [] TIMEOUTS = new int [] {2000, 3000, 5000};
+	// 동시에 진행중인 확인 수, 확인 하나가 최대 timeout 동안 worker 를 점유한다
+	private final static int MAX_INFLIGHT = 256;
+	// 응답시간과 손실률 기록 주기
+	private final static long FLUSH_INTV = 60000;
 	
 	private final Map<String, ICMPNode> nodeList = new HashMap<>();
+	private final ICMPSweeper sweeper = new ICMPSweeper(Prober.ICMP, MAX_INFLIGHT, Agent.getICMPRate());
 	private final Table monitorTable = Agent.getTable(Table.Name.MONITOR);
+	private final Map<String, ICMPSeries> seriesList = new ConcurrentHashMap<>();
+	private final Map<String, FlapDamper> dampers = new ConcurrentHashMap<>();
+	private final File nodeRoot;
+	private volatile boolean isClosed = false;
+	private final WheelTimer.Task flush = new WheelTimer.Task() {
+		
+		@Override
+		protected void execute() {
+			flush();
+			
+			if (!isClosed) {
+				sweeper.schedule(this, FLUSH_INTV);
+			}
+		}
+	};
 	
-	public ICMPAgent() throws IOException {
+	public ICMPAgent(File root) throws IOException {
+		nodeRoot = new File(root, "node");
+		nodeRoot.mkdir();
+		
 		JSONObject snmpData = monitorTable.getJSONObject();
 		
 		for (Object ip : snmpData.keySet()) {
@@ -35,17 +64,21 @@ public class ICMPAgent implements ICMPListener, Closeable {
 			}
 		}
 		
+		this.sweeper.schedule(this.flush, FLUSH_INTV);
+		
 		System.out.println("ICMP manager start.");
 	}
 	
 	private void addNode(String ip) {
 		try {
-			ICMPNode node = new ICMPNode(this, ip, TIMEOUTS);
+			ICMPNode node = new ICMPNode(this.sweeper, this, ip, TIMEOUTS);
 			
 			synchronized (this.nodeList) {
 				this.nodeList.put(ip, node);
 			}
 			
+			this.seriesList.put(ip, new ICMPSeries(this.nodeRoot, ip));
+			
 			node.ping(0);
 		} catch (UnknownHostException uhe) {
 			Agent.syslog(Util.EToString(uhe));
@@ -69,6 +102,12 @@ public class ICMPAgent implements ICMPListener, Closeable {
 			Agent.syslog(Util.EToString(ioe));
 		}
 		
+		this.seriesList.remove(ip);
+		
+		this.dampers.remove(ip);
+		
+		Agent.removeTop(ip);
+		
 		return true;
 	}
 	
@@ -79,7 +118,7 @@ public class ICMPAgent implements ICMPListener, Closeable {
 	}
 	
 	public void testNode(final String ip) {
-		new Thread(new Runnable() {
+		Util.newThread(new Runnable() {
 
 			@Override
 			public void run() {
@@ -122,24 +161,35 @@ public class ICMPAgent implements ICMPListener, Closeable {
 				}
 			}
 			
-		}).start();
+		}, "ITAhM ICMP Test "+ ip).start();
+	}
+	
+	private boolean damp(String ip, JSONObject monitor, boolean isDown) {
+		FlapDamper damper = this.dampers.get(ip);
+		
+		if (damper == null) {
+			this.dampers.put(ip, damper = new FlapDamper(monitor.getBoolean("shutdown")));
+		}
+		
+		return damper.update(isDown, Agent.getFlapCount(), Agent.getFlapHalfLife());
 	}
 	
 	public void onSuccess(ICMPNode node, long time) {
 		JSONObject monitor = this.monitorTable.getJSONObject(node.ip);
+		ICMPSeries series = this.seriesList.get(node.ip);
+		
+		if (series != null) {
+			series.onSuccess(time);
+		}
 		
 		if (monitor == null) {
 			return;
 		}
 		
-		if (monitor.getBoolean("shutdown")) {
+		if (damp(node.ip, monitor, false)) {
 			monitor.put("shutdown", false);
 			
-			try {
-				this.monitorTable.save();
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.monitorTable.saveLater();
 			
 			Agent.log(new JSONObject()
 				.put("origin", "shutdown")
@@ -154,19 +204,20 @@ public class ICMPAgent implements ICMPListener, Closeable {
 	
 	public void onFailure(ICMPNode node) {
 		JSONObject monitor = this.monitorTable.getJSONObject(node.ip);
+		ICMPSeries series = this.seriesList.get(node.ip);
+		
+		if (series != null) {
+			series.onFailure();
+		}
 		
 		if (monitor == null) {
 			return;
 		}
 		
-		if (!monitor.getBoolean("shutdown")) {
+		if (damp(node.ip, monitor, true)) {
 			monitor.put("shutdown", true);
 			
-			try {
-				this.monitorTable.save();
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.monitorTable.saveLater();
 			
 			Agent.log(new JSONObject()
 				.put("origin", "shutdown")
@@ -179,6 +230,49 @@ public class ICMPAgent implements ICMPListener, Closeable {
 		node.ping(0);
 	}
 	
+	/**
+	 * 누적된 응답시간과 손실률을 모든 node 에 대해 기록
+	 */
+	private void flush() {
+		for (ICMPSeries series : this.seriesList.values()) {
+			try {
+				series.flush();
+			} catch (IOException ioe) {
+				Agent.syslog(Util.EToString(ioe));
+			}
+		}
+	}
+	
+	public JSONObject getData(String ip, String database, String index, long start, long end, boolean summary) {
+		ICMPSeries series = this.seriesList.get(ip);
+		
+		if (series == null) {
+			return null;
+		}
+		
+		try {
+			return series.getData(database, index, start, end, summary);
+		} catch (IOException ioe) {
+			Agent.syslog(Util.EToString(ioe));
+		}
+		
+		return null;
+	}
+	
+	public void setRate() {
+		this.sweeper.setRate(Agent.getICMPRate());
+	}
+	
+	public JSONObject getStatus() {
+		JSONObject status = this.sweeper.getStatus();
+		
+		synchronized (this.nodeList) {
+			status.put("nodes", this.nodeList.size());
+		}
+		
+		return status;
+	}
+	
 	/**
 	 * ovverride
 	 */
@@ -198,6 +292,12 @@ public class ICMPAgent implements ICMPListener, Closeable {
 		
 		this.nodeList.clear();
 		
+		this.isClosed = true;
+		
+		this.sweeper.close();
+		
+		flush();
+		
 		System.out.format("ICMP manager stop.\n");
 		
 		if (e != null) {
@@ -0,0 +1,127 @@
+package com.itahm;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.itahm.json.JSONObject;
+import com.itahm.json.RollingFile;
+import com.itahm.util.TopTable;
+
+/**
+ * ICMP node 하나의 응답시간과 손실률.
+ * 확인 결과는 메모리에 누적만 하고 flush 에서 구간 평균을 RollingFile 에 기록한다.
+ * 1초 주기로 확인하더라도 RollingFile 기록은 flush 주기마다 한번이다.
+ */
+class ICMPSeries {
+	
+	public enum Rolling {
+		RESPONSETIME("responseTime"),
+		FAILURERATE("failureRate");
+		
+		private String database;
+		
+		private Rolling(String database) {
+			this.database = database;
+		}
+		
+		public String toString() {
+			return this.database;
+		}
+	}
+	
+	private final String ip;
+	private final File nodeRoot;
+	private final Map<Rolling, RollingFile> rollingMap = new HashMap<>();
+	// 마지막 flush 이후 누적
+	private long sum = 0;
+	private int success = 0;
+	private int failure = 0;
+	
+	ICMPSeries(File root, String ip) {
+		this.ip = ip;
+		
+		nodeRoot = new File(root, ip);
+		
+		for (Rolling database : Rolling.values()) {
+			new File(nodeRoot, database.toString()).mkdirs();
+		}
+	}
+	
+	synchronized void onSuccess(long time) {
+		this.sum += time;
+		this.success++;
+	}
+	
+	synchronized void onFailure() {
+		this.failure++;
+	}
+	
+	/**
+	 * 누적된 결과를 기록하고 초기화
+	 * @return 기록할 결과가 있었으면 true
+	 * @throws IOException
+	 */
+	synchronized boolean flush() throws IOException {
+		int count = this.success + this.failure;
+		
+		if (count == 0) {
+			return false;
+		}
+		
+		long rate = this.failure *100L / count;
+		
+		if (this.success > 0) {
+			long avg = this.sum / this.success;
+			
+			roll(Rolling.RESPONSETIME, avg);
+			
+			Agent.submitTop(this.ip, SNMPAgent.Resource.RESPONSETIME, new TopTable.Value(avg, -1, "0"));
+		}
+		
+		roll(Rolling.FAILURERATE, rate);
+		
+		Agent.submitTop(this.ip, SNMPAgent.Resource.FAILURERATE, new TopTable.Value(rate, rate, "-1"));
+		
+		this.sum = 0;
+		this.success = 0;
+		this.failure = 0;
+		
+		return true;
+	}
+	
+	private void roll(Rolling database, long value) throws IOException {
+		RollingFile rollingFile = this.rollingMap.get(database);
+		
+		if (rollingFile == null) {
+			this.rollingMap.put(database, rollingFile = RollingFile.getInstance(new File(this.nodeRoot, database.toString()), "0"));
+		}
+		
+		rollingFile.roll(value, Agent.getRollingInterval());
+	}
+	
+	synchronized JSONObject getData(String database, String index, long start, long end, boolean summary) throws IOException {
+		Rolling rolling;
+		
+		try {
+			rolling = Rolling.valueOf(database.toUpperCase());
+		}
+		catch (IllegalArgumentException iae) {
+			return null;
+		}
+		
+		if (!"0".equals(index)) {
+			return null;
+		}
+		
+		RollingFile rollingFile = this.rollingMap.get(rolling);
+		
+		if (rollingFile == null) {
+			rollingFile = new RollingFile(new File(this.nodeRoot, rolling.toString()), index);
+		}
+		
+		return rollingFile.getData(start, end, summary);
+	}
+
+}
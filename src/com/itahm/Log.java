@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import com.itahm.json.JSONObject;
@@ -70,6 +71,43 @@ public class Log {
 		}
 	}
 	
+	/**
+	 * trap 과 같이 한번에 많이 발생하는 log 를 묶어서 기록
+	 * @param list
+	 */
+	public void write(List<JSONObject> list) {
+		long date = Calendar.getInstance().getTimeInMillis();
+		
+		if (list.size() == 0) {
+			return;
+		}
+		
+		for (JSONObject log : list) {
+			log.put("date", date);
+		}
+		
+		try {
+			this.dailyFile.write(list);
+		} catch (IOException ioe) {
+			sysLog(Util.EToString(ioe));
+		}
+		
+		synchronized(this.waiter) {
+			// 대기중인 요청은 첫번째 log 를 받고 다음 index 를 다시 요청한다
+			Response response = Response.getInstance(Response.Status.OK, list.get(0).toString());
+			
+			for (Request request : this.waiter) {
+				try {
+					HTTPServer.sendResponse(request, response);
+				} catch (IOException ioe) {
+					sysLog(Util.EToString(ioe));
+				}
+			}
+			
+			waiter.clear();
+		}
+	}
+	
 	public void write(String ip, String message, String type, boolean status, boolean broadcast) {
 		JSONObject logData = new JSONObject();
 		
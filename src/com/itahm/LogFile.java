@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.Calendar;
+import java.util.List;
 
 import com.itahm.json.JSONObject;
 import com.itahm.util.DailyFile;
@@ -55,6 +56,29 @@ public class LogFile extends DailyFile {
 		write();
 	}
 	
+	/**
+	 * 여러 log 를 한번의 파일 쓰기로 기록
+	 * @param list
+	 * @throws IOException
+	 */
+	public synchronized void write(List<JSONObject> list) throws IOException {
+		String index;
+		
+		if (super.roll()) {
+			this.log.clear();
+		}
+		
+		for (JSONObject log : list) {
+			index = Long.toString(this.index++ & 0xffffffffL);
+			
+			log.put("index", index);
+			
+			this.log.put(index, log);
+		}
+		
+		write();
+	}
+	
 	private void write() throws IOException {
 		// dailyFile 은 쓰기와 읽기가 별개임 (읽기는 파일로부터 직접) 동기화 불필요.
 		byte [] ba = this.log.toString().getBytes(StandardCharsets.UTF_8);
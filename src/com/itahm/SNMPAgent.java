@@ -5,18 +5,23 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
+import com.itahm.json.JSONArray;
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
 
 import org.snmp4j.PDU;
 import org.snmp4j.Snmp;
+import org.snmp4j.TransportMapping;
 import org.snmp4j.mp.MPv3;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.security.AuthMD5;
@@ -32,17 +37,33 @@ import org.snmp4j.smi.OctetString;
 import org.snmp4j.smi.VariableBinding;
 import org.snmp4j.transport.DefaultUdpTransportMapping;
 
+import com.itahm.snmp.BackoffTimeoutModel;
+import com.itahm.snmp.Node;
 import com.itahm.snmp.RequestOID;
 import com.itahm.snmp.TmpNode;
 import com.itahm.table.Table;
+import com.itahm.util.Admission;
 import com.itahm.util.DataCleaner;
+import com.itahm.util.FlapDamper;
+import com.itahm.util.Histogram;
+import com.itahm.util.SnapshotStore;
 import com.itahm.util.TopTable;
 import com.itahm.util.Util;
+import com.itahm.util.WheelTimer;
 
 public class SNMPAgent extends Snmp implements Closeable {
 	
+	private final static long TICK = 100;
+	private final static int WHEEL = 512;
+	// 요청과 응답 처리, blocking 작업은 하지 않는다. virtual thread 인 경우 무시됨
+	private final static int WORKER = Runtime.getRuntime().availableProcessors() *8;
+	// ICMP 확인, 응답 없는 장비가 timeout 까지 붙잡으므로 worker 와 분리. virtual thread 인 경우 무시됨
+	private final static int PROBER = 64;
+	
 	private boolean isClosed = false;
 	private DataCleaner cleaner;
+	private Discovery discovery;
+	private TrapReceiver trap;
 	
 	public enum Resource {
 		RESPONSETIME("responseTime"),
@@ -75,10 +96,68 @@ public class SNMPAgent extends Snmp implements Closeable {
 	private final Table criticalTable;
 	private final TopTable<Resource> topTable;
 	private final Map<String, JSONObject> ifMap = new HashMap<>();
-	private final Timer timer;
+	private final Map<String, FlapDamper> dampers = new ConcurrentHashMap<>();
+	private final WheelTimer wheel;
+	/**
+	 * 모든 node 의 주기 단계별 소요시간
+	 */
+	private final Histogram [] phases = new Histogram [Node.Phase.values().length];
+	/**
+	 * node 파일은 응답마다 쓰지 않고 snapshotTimer 주기로 모아서
+	 */
+	private final SnapshotStore snapshot;
+	/**
+	 * 모든 node 가 공유하는 동시 요청 수와 초당 요청 수 제한
+	 */
+	private final Admission admission;
+	private final WheelTimer.Task flush = new WheelTimer.Task() {
+		
+		@Override
+		protected void execute() {
+			try {
+				snapshot.flush();
+				
+				monitorTable.flush();
+			} catch (IOException ioe) {
+				Agent.syslog(Util.EToString(ioe));
+			}
+			finally {
+				if (!isClosed) {
+					wheel.schedule(this, Agent.getSnapshotTimer());
+				}
+			}
+		}
+	};
+	/**
+	 * 모든 node 의 요청과 응답을 처리하는 공용 worker pool
+	 */
+	final ExecutorService executor;
+	/**
+	 * precheck 와 SNMP 실패시의 ICMP 확인을 하는 pool, 응답 없는 장비가 있어도 executor 는 막히지 않는다
+	 */
+	final ExecutorService prober;
+	/**
+	 * UDP socket 마다 listen thread 가 있으므로 응답의 decoding 과 USM 처리가 나누어진다.
+	 * node 는 ip 에 따라 하나의 transport 를 사용한다.
+	 */
+	private final TransportMapping<?> [] transports;
 	
 	public SNMPAgent(File root) throws IOException {
-		super(new DefaultUdpTransportMapping());
+		this(root, new DefaultUdpTransportMapping());
+	}
+	
+	private SNMPAgent(File root, TransportMapping<?> transport) throws IOException {
+		super(transport);
+		
+		transports = new TransportMapping<?> [Math.max(1, Agent.getTransportCount())];
+		transports[0] = transport;
+		
+		for (int i=1; i<transports.length; i++) {
+			super.addTransportMapping(transports[i] = new DefaultUdpTransportMapping());
+		}
+		
+		// 재전송 할 때 마다 timeout 두배
+		super.setTimeoutModel(new BackoffTimeoutModel(Node.RTO_MAX));
 		
 		System.out.println("SNMP manager start.");
 		
@@ -90,11 +169,48 @@ public class SNMPAgent extends Snmp implements Closeable {
 		
 		topTable = new TopTable<>(Resource.class);
 		
-		timer = new Timer();
+		for (int i=0; i<phases.length; i++) {
+			phases[i] = new Histogram();
+		}
+		
+		executor = Util.newExecutor(WORKER, "ITAhM SNMP Worker");
+		
+		prober = Util.newExecutor(PROBER, "ITAhM SNMP Prober");
+		
+		admission = new Admission("ITAhM SNMP Admission", Agent.getMaxInflight(), Agent.getMaxPPS());
+		
+		wheel = new WheelTimer("ITAhM SNMP Scheduler", TICK, WHEEL, executor);
 		 
 		nodeRoot = new File(root, "node");
 		nodeRoot.mkdir();
 		
+		snapshot = new SnapshotStore() {
+			
+			@Override
+			protected File getFile(String ip) {
+				return new File(new File(nodeRoot, ip), "node");
+			}
+			
+			@Override
+			protected String getSnapshot(String ip) {
+				SNMPNode node = nodeList.get(ip);
+				JSONObject data;
+				
+				if (node == null) {
+					return null;
+				}
+				
+				// 주기 진행중에도 data 가 수정되므로 node 의 lock 안에서 문자열로
+				synchronized(node) {
+					data = node.getData();
+					
+					return data == null? null: data.toString();
+				}
+			}
+		};
+		
+		wheel.schedule(flush, Agent.getSnapshotTimer());
+		
 		_initialize();
 	}
 	
@@ -118,21 +234,25 @@ public class SNMPAgent extends Snmp implements Closeable {
 		
 		super.listen();
 		
+		// 162 port 를 사용할 수 없어도 polling 은 계속
+		try {
+			this.trap = new TrapReceiver(this);
+		} catch (IOException ioe) {
+			Agent.syslog(String.format("trap receiver 실패 %s", ioe.getMessage()));
+		}
+		
 		initNode();
 	}
 	
+	/**
+	 * fast tier, 매 주기 요청하는 counter, 상태, 부하
+	 * @param pdu
+	 */
 	public void setRequestOID(PDU pdu) {
-		pdu.add(new VariableBinding(RequestOID.sysDescr));
-		pdu.add(new VariableBinding(RequestOID.sysObjectID));
-		pdu.add(new VariableBinding(RequestOID.sysName));
-		pdu.add(new VariableBinding(RequestOID.sysServices));
-		pdu.add(new VariableBinding(RequestOID.ifDescr));
-		pdu.add(new VariableBinding(RequestOID.ifType));
+		pdu.add(new VariableBinding(RequestOID.sysUpTime));
 		pdu.add(new VariableBinding(RequestOID.ifSpeed));
-		pdu.add(new VariableBinding(RequestOID.ifPhysAddress));
 		pdu.add(new VariableBinding(RequestOID.ifAdminStatus));
 		pdu.add(new VariableBinding(RequestOID.ifOperStatus));
-		pdu.add(new VariableBinding(RequestOID.ifName));
 		pdu.add(new VariableBinding(RequestOID.ifInOctets));
 		pdu.add(new VariableBinding(RequestOID.ifInErrors));
 		pdu.add(new VariableBinding(RequestOID.ifOutOctets));
@@ -140,17 +260,31 @@ public class SNMPAgent extends Snmp implements Closeable {
 		pdu.add(new VariableBinding(RequestOID.ifHCInOctets));
 		pdu.add(new VariableBinding(RequestOID.ifHCOutOctets));
 		pdu.add(new VariableBinding(RequestOID.ifHighSpeed));
-		pdu.add(new VariableBinding(RequestOID.ifAlias));
 		pdu.add(new VariableBinding(RequestOID.hrSystemUptime));
 		pdu.add(new VariableBinding(RequestOID.hrProcessorLoad));
-		pdu.add(new VariableBinding(RequestOID.hrSWRunName));
-		pdu.add(new VariableBinding(RequestOID.hrStorageType));
-		pdu.add(new VariableBinding(RequestOID.hrStorageDescr));
 		pdu.add(new VariableBinding(RequestOID.hrStorageAllocationUnits));
 		pdu.add(new VariableBinding(RequestOID.hrStorageSize));
 		pdu.add(new VariableBinding(RequestOID.hrStorageUsed));
 	}
 	
+	/**
+	 * slow tier, staticTimer 주기 또는 재탐색이 필요할때 요청하는 descriptive column
+	 * @param pdu
+	 */
+	public void setStaticOID(PDU pdu) {
+		pdu.add(new VariableBinding(RequestOID.sysDescr));
+		pdu.add(new VariableBinding(RequestOID.sysObjectID));
+		pdu.add(new VariableBinding(RequestOID.sysName));
+		pdu.add(new VariableBinding(RequestOID.sysServices));
+		pdu.add(new VariableBinding(RequestOID.ifDescr));
+		pdu.add(new VariableBinding(RequestOID.ifType));
+		pdu.add(new VariableBinding(RequestOID.ifPhysAddress));
+		pdu.add(new VariableBinding(RequestOID.ifName));
+		pdu.add(new VariableBinding(RequestOID.ifAlias));
+		pdu.add(new VariableBinding(RequestOID.hrStorageType));
+		pdu.add(new VariableBinding(RequestOID.hrStorageDescr));
+	}
+	
 	public boolean  registerNode(String ip, String profileName) {
 		if (Agent.limit > 0 && this.nodeList.size() >= Agent.limit) {
 			Agent.log(new JSONObject().
@@ -161,7 +295,7 @@ public class SNMPAgent extends Snmp implements Closeable {
 		}
 		else {
 			try {
-				addNode(ip, profileName);
+				addNode(ip, profileName, false);
 			} catch (IOException ioe) {
 				Agent.syslog(Util.EToString(ioe));
 			}
@@ -170,7 +304,14 @@ public class SNMPAgent extends Snmp implements Closeable {
 		}
 	}
 	
-	private void addNode(String ip, String profileName) throws IOException {		
+	/**
+	 * 
+	 * @param ip
+	 * @param profileName
+	 * @param isRamp true 이면 첫 요청을 요청 주기 안의 node 의 시점까지 미룸, 시작시 요청이 한번에 몰리지 않도록
+	 * @throws IOException
+	 */
+	private void addNode(String ip, String profileName, boolean isRamp) throws IOException {		
 		final JSONObject profile = profileTable.getJSONObject(profileName);
 		
 		if (profile == null) {
@@ -212,15 +353,79 @@ public class SNMPAgent extends Snmp implements Closeable {
 					this.ifMap.containsKey(ip)? this.ifMap.get(ip): new JSONObject());
 			}
 			
+			node.setProcess(getProcessInterval(ip, profile));
+			
 			this.nodeList.put(ip, node);
 			
-			node.request();
+			if (isRamp) {
+				sendNextRequest(node);
+			}
+			else {
+				node.request();
+			}
 		}
 		catch (JSONException jsone) {
 			Agent.syslog(Util.EToString(jsone));
 		}
 	}
 	
+	/**
+	 * process 목록 수집 주기, device 설정이 profile 설정에 우선하며 둘 다 없으면 -1 (전역 설정)
+	 * @param ip
+	 * @param profile
+	 * @return
+	 */
+	private int getProcessInterval(String ip, JSONObject profile) {
+		JSONObject deviceData = Agent.getTable(Table.Name.DEVICE).getJSONObject(),
+			device;
+		
+		for (Object id : deviceData.keySet()) {
+			device = deviceData.getJSONObject((String)id);
+			
+			if (device.has("ip") && ip.equals(device.getString("ip")) && device.has("process")) {
+				return device.getInt("process");
+			}
+		}
+		
+		return profile.has("process")? profile.getInt("process"): -1;
+	}
+	
+	/**
+	 * device 설정 변경시 process 수집 주기를 다시 적용
+	 * @param ip
+	 */
+	public void setProcess(String ip) {
+		SNMPNode node = this.nodeList.get(ip);
+		JSONObject monitor = this.monitorTable.getJSONObject(ip);
+		JSONObject profile;
+		
+		if (node == null || monitor == null || (profile = this.profileTable.getJSONObject(monitor.getString("profile"))) == null) {
+			return;
+		}
+		
+		node.setProcess(getProcessInterval(ip, profile));
+	}
+	
+	/**
+	 * 
+	 * @param ip
+	 * @param request true 이면 다음 주기에 수집
+	 * @return process 목록, node 가 없으면 null
+	 */
+	public JSONObject getProcess(String ip, boolean request) {
+		SNMPNode node = this.nodeList.get(ip);
+		
+		if (node == null) {
+			return null;
+		}
+		
+		if (request) {
+			node.requestProcess();
+		}
+		
+		return node.getProcess();
+	}
+	
 	private void initUSM() {
 		JSONObject profileData = profileTable.getJSONObject();
 		JSONObject profile;
@@ -309,12 +514,24 @@ public class SNMPAgent extends Snmp implements Closeable {
 	}
 
 	public boolean removeNode(String ip) {
-		if (this.nodeList.remove(ip) == null) {
+		SNMPNode node = this.nodeList.remove(ip);
+		
+		if (node == null) {
 			return false;
 		}
 		
+		try {
+			node.close();
+		} catch (IOException ioe) {
+			Agent.syslog(Util.EToString(ioe));
+		}
+		
 		this.topTable.remove(ip);
 		
+		this.snapshot.remove(ip);
+		
+		this.dampers.remove(ip);
+		
 		return true;
 	}
 	
@@ -329,7 +546,7 @@ public class SNMPAgent extends Snmp implements Closeable {
 			monitor = monitorData.getJSONObject(ip);
 		
 			if ("snmp".equals(monitor.getString("protocol"))) {
-				addNode(ip, monitor.getString("profile"));
+				addNode(ip, monitor.getString("profile"), true);
 			}
 		}
 	}
@@ -570,26 +787,48 @@ public class SNMPAgent extends Snmp implements Closeable {
 			return;
 		}
 		
+		testNode(new TestNode(this, ip, id));
+	}
+	
+	/**
+	 * 모든 profile 을 우선순위(v3, v2c, v1, 이름) 순으로 추가하여 test
+	 * @param node
+	 */
+	void testNode(TmpNode node) {
 		final JSONObject profileData = this.profileTable.getJSONObject();
+		List<String> names = new ArrayList<>();
 		JSONObject profile;
 		
-		TmpNode node = new TestNode(this, ip, id);
-		
 		for (Object name : profileData.keySet()) {
-			profile = profileData.getJSONObject((String)name);
+			names.add((String)name);
+		}
+		
+		Collections.sort(names, new Comparator<String>() {
+
+			@Override
+			public int compare(String name1, String name2) {
+				int priority = getPriority(profileData.getJSONObject(name1)) - getPriority(profileData.getJSONObject(name2));
+				
+				return priority != 0? priority: name1.compareTo(name2);
+			}
+			
+		});
+		
+		for (String name : names) {
+			profile = profileData.getJSONObject(name);
 			
 			try {
 				switch(profile.getString("version")) {
 				case "v3":
-					node.addV3Profile((String)name, profile.getInt("udp"), new OctetString(profile.getString("user"))
+					node.addV3Profile(name, profile.getInt("udp"), new OctetString(profile.getString("user"))
 							, (profile.has("md5") || profile.has("sha"))? (profile.has("des")) ? SecurityLevel.AUTH_PRIV: SecurityLevel.AUTH_NOPRIV : SecurityLevel.NOAUTH_NOPRIV);
 					break;
 				case "v2c":
-					node.addProfile((String)name, profile.getInt("udp"), new OctetString(profile.getString("community")), SnmpConstants.version2c);
+					node.addProfile(name, profile.getInt("udp"), new OctetString(profile.getString("community")), SnmpConstants.version2c);
 					
 					break;
 				case "v1":
-					node.addProfile((String)name, profile.getInt("udp"), new OctetString(profile.getString("community")), SnmpConstants.version1);
+					node.addProfile(name, profile.getInt("udp"), new OctetString(profile.getString("community")), SnmpConstants.version1);
 					
 					break;
 				}
@@ -601,6 +840,17 @@ public class SNMPAgent extends Snmp implements Closeable {
 		node.test();
 	}
 	
+	private static int getPriority(JSONObject profile) {
+		switch(profile.optString("version")) {
+		case "v3":
+			return 0;
+		case "v2c":
+			return 1;
+		default:
+			return 2;
+		}
+	}
+	
 	public SNMPNode getNode(String ip) {
 		return this.nodeList.get(ip);
 	}
@@ -675,7 +925,9 @@ public class SNMPAgent extends Snmp implements Closeable {
 			return null;
 		}
 		
-		JSONObject json = new JSONObject().put("failure", node.getFailureRate());
+		JSONObject json = new JSONObject()
+			.put("failure", node.getFailureRate())
+			.put("rto", node.getRTO());
 		
 		return json;
 	}
@@ -688,11 +940,7 @@ public class SNMPAgent extends Snmp implements Closeable {
 		}
 		
 		if (success) {
-			try {
-				Util.putJSONtoFile(new File(new File(this.nodeRoot, ip), "node"), node.getData());
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.snapshot.mark(ip);
 			
 			sendNextRequest(node);
 		}
@@ -717,6 +965,23 @@ public class SNMPAgent extends Snmp implements Closeable {
 		}
 	}
 	
+	/**
+	 * 
+	 * @param ip
+	 * @param monitor
+	 * @param isDown 이번 확인 결과
+	 * @return shutdown 상태를 바꾸고 알려야 하면 true
+	 */
+	private boolean damp(String ip, JSONObject monitor, boolean isDown) {
+		FlapDamper damper = this.dampers.get(ip);
+		
+		if (damper == null) {
+			this.dampers.put(ip, damper = new FlapDamper(monitor.getBoolean("shutdown")));
+		}
+		
+		return damper.update(isDown, Agent.getFlapCount(), Agent.getFlapHalfLife());
+	}
+	
 	/**
 	 * ICMP 요청에 대한 응답
 	 */
@@ -734,14 +999,10 @@ public class SNMPAgent extends Snmp implements Closeable {
 			return;
 		}
 		
-		if (monitor.getBoolean("shutdown")) {
+		if (damp(ip, monitor, false)) {
 			monitor.put("shutdown", false);
 			
-			try {
-				this.monitorTable.save();
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.monitorTable.saveLater();
 			
 			Agent.log(new JSONObject()
 				.put("origin", "shutdown")
@@ -768,14 +1029,10 @@ public class SNMPAgent extends Snmp implements Closeable {
 			return;
 		}
 		
-		if (!monitor.getBoolean("shutdown")) {
+		if (damp(ip, monitor, true)) {
 			monitor.put("shutdown", true);
 			
-			try {
-				this.monitorTable.save();
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.monitorTable.saveLater();
 			
 			Agent.log(new JSONObject()
 				.put("origin", "shutdown")
@@ -849,11 +1106,7 @@ public class SNMPAgent extends Snmp implements Closeable {
 		if (monitor.getBoolean("critical") != b) {
 			monitor.put("critical", b);
 			
-			try {
-				this.monitorTable.save();
-			} catch (IOException ioe) {
-				Agent.syslog(Util.EToString(ioe));
-			}
+			this.monitorTable.saveLater();
 		}
 		
 		try {
@@ -884,23 +1137,34 @@ public class SNMPAgent extends Snmp implements Closeable {
 		this.topTable.submit(ip, resource, value);
 	}
 	
+	/**
+	 * SNMP node 가 아닌 (ICMP) node 의 top 제출
+	 */
+	public void submitTop(String ip, Resource resource, TopTable.Value value) {
+		this.topTable.submit(ip, resource, value);
+	}
+	
+	public void removeTop(String ip) {
+		this.topTable.remove(ip);
+	}
+	
+	/**
+	 * requestTimer 주기의 node 고유 시점(phase)에 다음 요청을 예약한다.
+	 * 모든 node 가 같은 시점에 몰리지 않고 requestTimer 전체에 고르게 분산된다.
+	 * @param node
+	 */
 	private void sendNextRequest(final SNMPNode node) {
 		if (this.isClosed) {
 			return;
 		}
 		
-		this.timer.schedule(
-			new TimerTask() {
-
-				@Override
-				public void run() {
-					sendRequest(node);
-				}
-				
-			}, Agent.getRequestTimer());
+		long interval = Agent.getRequestTimer();
+		long delay = Math.floorMod((long)(node.phase * interval) - System.currentTimeMillis(), interval);
+		
+		this.wheel.schedule(node.schedule, delay);
 	}
 	
-	private final void sendRequest(SNMPNode node) {
+	final void sendRequest(SNMPNode node) {
 		try {
 			node.request();
 		} catch (IOException ioe) {
@@ -932,6 +1196,174 @@ public class SNMPAgent extends Snmp implements Closeable {
 		
 		return jsono;
 	}
+	
+	boolean hasNode(String ip) {
+		return this.nodeList.containsKey(ip);
+	}
+	
+	int getProfileCount() {
+		return this.profileTable.getJSONObject().length();
+	}
+	
+	/**
+	 * network 탐색 시작, 한번에 하나의 탐색만 진행된다.
+	 * @param network
+	 * @param mask
+	 * @return 탐색 상태
+	 * @throws IOException
+	 */
+	public synchronized JSONObject search(String network, int mask) throws IOException {
+		if (this.discovery != null && !this.discovery.isComplete()) {
+			throw new IOException("discovery in progress");
+		}
+		
+		this.discovery = new Discovery(this, network, mask, Agent.getDiscoveryRate());
+		
+		Util.newThread(this.discovery, "ITAhM Discovery").start();
+		
+		return this.discovery.getStatus();
+	}
+	
+	/**
+	 * 
+	 * @return 마지막 탐색의 상태, 없으면 null
+	 */
+	public synchronized JSONObject getDiscovery() {
+		return this.discovery == null? null: this.discovery.getStatus();
+	}
+	
+	void record(Node.Phase phase, long nano) {
+		this.phases[phase.ordinal()].record(nano / 1000);
+	}
+	
+	/**
+	 * 
+	 * @param ip null 이면 전체
+	 * @param count 전체인 경우 주기 p99 가 가장 긴 node 수
+	 * @return 단계별 소요시간 분포 (microseconds), node 가 없으면 null
+	 */
+	public JSONObject getPhase(String ip, int count) {
+		if (ip != null) {
+			SNMPNode node = this.nodeList.get(ip);
+			
+			return node == null? null: node.getPhase();
+		}
+		
+		JSONObject total = new JSONObject();
+		JSONArray top = new JSONArray();
+		// 정렬 중에도 histogram 은 계속 바뀌므로 node 마다 한번씩 읽어둔 값으로 정렬한다
+		final Map<String, long []> snapshot = new HashMap<>();
+		List<String> list;
+		Node.Phase [] phases = Node.Phase.values();
+		long [] values;
+		JSONObject p99;
+		
+		for (Node.Phase phase : phases) {
+			total.put(phase.toString(), this.phases[phase.ordinal()].toJSON());
+		}
+		
+		for (Map.Entry<String, SNMPNode> entry : this.nodeList.entrySet()) {
+			values = new long [phases.length];
+			
+			for (Node.Phase phase : phases) {
+				values[phase.ordinal()] = entry.getValue().getPhase(phase, 99);
+			}
+			
+			snapshot.put(entry.getKey(), values);
+		}
+		
+		list = new ArrayList<>(snapshot.keySet());
+		
+		Collections.sort(list, new Comparator<String>() {
+
+			@Override
+			public int compare(String ip1, String ip2) {
+				return Long.compare(snapshot.get(ip2)[Node.Phase.CYCLE.ordinal()], snapshot.get(ip1)[Node.Phase.CYCLE.ordinal()]);
+			}
+			
+		});
+		
+		for (int i=0, _i=Math.min(count, list.size()); i<_i; i++) {
+			p99 = new JSONObject();
+			values = snapshot.get(list.get(i));
+			
+			for (Node.Phase phase : phases) {
+				p99.put(phase.toString(), values[phase.ordinal()]);
+			}
+			
+			top.put(new JSONObject()
+				.put("ip", list.get(i))
+				.put("p99", p99));
+		}
+		
+		return new JSONObject()
+			.put("total", total)
+			.put("top", top);
+	}
+	
+	public void clearPhase() {
+		for (Histogram histogram : this.phases) {
+			histogram.clear();
+		}
+		
+		for (SNMPNode node : this.nodeList.values()) {
+			node.clearPhase();
+		}
+	}
+	
+	/**
+	 * iftype 설정 변경시 모든 node 의 GET plan 을 다시 만듦
+	 */
+	public void invalidatePlan() {
+		for (SNMPNode node : this.nodeList.values()) {
+			node.invalidatePlan();
+		}
+	}
+	
+	Admission getAdmission() {
+		return this.admission;
+	}
+	
+	/**
+	 * 설정 변경시
+	 */
+	public void setAdmission() {
+		this.admission.setLimit(Agent.getMaxInflight(), Agent.getMaxPPS());
+	}
+	
+	public JSONObject getBudget() {
+		return this.admission.getStatus();
+	}
+	
+	public JSONObject getSnapshot() {
+		return this.snapshot.getStatus();
+	}
+	
+	/**
+	 * 
+	 * @return trap 수신 통계, 수신하지 않는 경우 null
+	 */
+	public JSONObject getTrap() {
+		return this.trap == null? null: this.trap.getStatus();
+	}
+	
+	/**
+	 * 마지막 호출 이후의 scheduling lag (계획 대비 실제 요청 시각)
+	 * @return
+	 */
+	public JSONObject getLag() {
+		return this.wheel.getLag();
+	}
+	
+	/**
+	 * 
+	 * @param ip
+	 * @return ip 가 사용할 transport
+	 */
+	TransportMapping<?> getTransport(String ip) {
+		return this.transports[Math.floorMod(ip.hashCode(), this.transports.length)];
+	}
+	
 	public long getResourceCount() {
 		long count = 0;
 		
@@ -949,6 +1381,16 @@ public class SNMPAgent extends Snmp implements Closeable {
 	public void close() {
 		this.isClosed = true;
 		
+		synchronized(this) {
+			if (this.discovery != null) {
+				this.discovery.close();
+			}
+		}
+		
+		if (this.trap != null) {
+			this.trap.close();
+		}
+		
 		try {
 			super.close();
 		} catch (IOException ioe) {
@@ -963,7 +1405,16 @@ public class SNMPAgent extends Snmp implements Closeable {
 			}
 		}
 		
-		this.timer.cancel();
+		this.wheel.close();
+		
+		this.admission.close();
+		
+		this.executor.shutdownNow();
+		
+		this.prober.shutdownNow();
+		
+		// 남은 node 파일 기록
+		this.snapshot.close();
 		
 		if (this.cleaner != null) {
 			this.cleaner.cancel();
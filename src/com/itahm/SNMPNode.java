@@ -4,22 +4,24 @@ import java.io.File;
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.snmp4j.smi.OID;
 import org.snmp4j.smi.OctetString;
-import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
 
-import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
 import com.itahm.json.RollingFile;
 import com.itahm.snmp.Node;
+import com.itahm.snmp.RequestOID;
+import com.itahm.snmp.SampleTable;
 import com.itahm.util.TopTable;
 import com.itahm.util.Util;
+import com.itahm.util.WheelTimer;
 
 public class SNMPNode extends Node {
 	
-	private final static OID OID_TRAP = new OID(new int [] {1,3,6,1,6,3,1,1,5});
 	private final static OID OID_LINKDOWN = new OID(new int [] {1,3,6,1,6,3,1,1,5,3});
 	private final static OID OID_LINKUP = new OID(new int [] {1,3,6,1,6,3,1,1,5,4});
 	
@@ -49,6 +51,25 @@ public class SNMPNode extends Node {
 	private JSONObject ifSpeed;
 	private SNMPAgent agent;
 	private Critical critical;
+	// 이번 주기의 저장과 임계 분석 누적 (nanoseconds)
+	private long storeTime;
+	private long criticalTime;
+	/**
+	 * requestTimer 내에서 이 node 의 요청 시점 (0 ~ 1), node 마다 임의로 분산
+	 */
+	final double phase = Math.random();
+	/**
+	 * 다음 요청을 위한 schedule, node 마다 하나만 생성하여 재사용
+	 */
+	final WheelTimer.Task schedule = new WheelTimer.Task() {
+		
+		@Override
+		protected void execute() {
+			record(Phase.LAG, getLag() *1000000);
+			
+			agent.sendRequest(SNMPNode.this);
+		}
+	};
 	
 	public static SNMPNode	getInstance(SNMPAgent agent, String ip, int udp, String user, int level, JSONObject criticalCondition, JSONObject ifSpeed) throws IOException {
 		SNMPNode node = new SNMPNode(agent, ip, udp, user, level, criticalCondition);
@@ -67,15 +88,27 @@ public class SNMPNode extends Node {
 	}
 	
 	private SNMPNode(SNMPAgent agent, String ip, int udp, int version, String community, JSONObject criticalCondition) throws IOException {
-		super(agent, ip, udp, version, new OctetString(community));
+		super(agent, agent.executor, ip, udp, version, new OctetString(community));
+		
+		super.setTransport(agent.getTransport(ip));
+		super.setAdmission(agent.getAdmission());
+		super.setProber(agent.prober);
 		
 		agent.setRequestOID(super.pdu);
+		agent.setStaticOID(super.slowPDU);
+		agent.setRequestOID(super.slowPDU);
 	}
 	
 	private SNMPNode(SNMPAgent agent, String ip, int udp, String user, int level, JSONObject criticalCondition) throws IOException {
-		super(agent, ip, udp, new OctetString(user), level);
+		super(agent, agent.executor, ip, udp, new OctetString(user), level);
+		
+		super.setTransport(agent.getTransport(ip));
+		super.setAdmission(agent.getAdmission());
+		super.setProber(agent.prober);
 		
 		agent.setRequestOID(super.pdu);
+		agent.setStaticOID(super.slowPDU);
+		agent.setRequestOID(super.slowPDU);
 	}
 	
 	private void initialize(SNMPAgent agent, String ip, JSONObject critical, JSONObject ifSpeed) throws UnknownHostException {
@@ -91,6 +124,21 @@ public class SNMPNode extends Node {
 			new File(nodeRoot, database.toString()).mkdir();
 		}
 		
+		// 학습된 PDU 크기
+		File f = new File(this.nodeRoot, "pdu");
+		
+		if (f.isFile()) {
+			try {
+				JSONObject limit = Util.getJSONFromFile(f);
+				
+				if (limit != null) {
+					super.setPDULimit(limit);
+				}
+			} catch (IOException ioe) {
+				Agent.syslog(Util.EToString(ioe));
+			}
+		}
+		
 		this.critical = new Critical(critical) {
 			@Override
 			public void onCritical(boolean isCritical, String resource, String index, long rate, String description) {
@@ -105,10 +153,26 @@ public class SNMPNode extends Node {
 		RollingFile rollingFile = rollingMap.get(index);
 		
 		if (rollingFile == null) {
-			rollingMap.put(index, rollingFile = new RollingFile(new File(this.nodeRoot, database.toString()), index));
+			rollingMap.put(index, rollingFile = RollingFile.getInstance(new File(this.nodeRoot, database.toString()), index));
 		}
 		
+		long start = System.nanoTime();
+		
 		rollingFile.roll(value, Agent.getRollingInterval());
+		
+		this.storeTime += System.nanoTime() - start;
+	}
+	
+	private void analyze(Critical.Resource resource, String index, long max, long value) {
+		if (this.critical == null) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		
+		this.critical.analyze(resource, index, max, value);
+		
+		this.criticalTime += System.nanoTime() - start;
 	}
 	
 	private void parseResponseTime() throws IOException {
@@ -118,17 +182,22 @@ public class SNMPNode extends Node {
 	}
 	
 	private void parseProcessor() throws IOException {
+		SampleTable table = super.hrProcessorEntry;
 		TopTable.Value max = null;
+		String index;
 		long value;
 		
-		for(String index: super.hrProcessorEntry.keySet()) {
-			value = super.hrProcessorEntry.get(index);
+		for (int row=0, length=table.size(); row<length; row++) {
+			if (!table.has(row, PROCESSOR_LOAD)) {
+				continue;
+			}
+			
+			index = Integer.toString(table.getIndex(row));
+			value = table.get(row, PROCESSOR_LOAD);
 			
 			this.putData(Rolling.HRPROCESSORLOAD, index, value);
 			
-			if (this.critical != null) {
-				this.critical.analyze(Critical.Resource.PROCESSOR, index, 100, value);
-			}
+			analyze(Critical.Resource.PROCESSOR, index, 100, value);
 			
 			if (max == null || max.getValue() < value) {
 				max = new TopTable.Value(value, value, index);
@@ -141,38 +210,34 @@ public class SNMPNode extends Node {
 	}
 	
 	private void parseStorage() throws IOException {
-		JSONObject data;
+		SampleTable table = super.hrStorageEntry;
 		TopTable.Value max = null;
 		TopTable.Value maxRate = null;
+		String index;
 		long value, capacity, tmpValue;
-		int type;
 		
-		for(String index: super.hrStorageEntry.keySet()) {
-			data = super.hrStorageEntry.get(index);
-			
-			try {
-				capacity = data.getInt("hrStorageSize");
-				tmpValue = data.getInt("hrStorageUsed");
-				value = 1L* tmpValue * data.getInt("hrStorageAllocationUnits");
-				type = data.getInt("hrStorageType");
-			} catch (JSONException jsone) {
-				Agent.syslog(Util.EToString(jsone));
-				
-				return;
+		for (int row=0, length=table.size(); row<length; row++) {
+			if (!table.has(row, STORAGE_SIZE) || !table.has(row, STORAGE_USED) ||
+				!table.has(row, STORAGE_ALLOCATION_UNITS) || !table.has(row, STORAGE_TYPE)) {
+				continue;
 			}
 			
+			capacity = table.get(row, STORAGE_SIZE);
+			tmpValue = table.get(row, STORAGE_USED);
+			value = tmpValue * table.get(row, STORAGE_ALLOCATION_UNITS);
+			
 			if (capacity <= 0) {
 				continue;
 			}
 			
+			index = Integer.toString(table.getIndex(row));
+			
 			this.putData(Rolling.HRSTORAGEUSED, index, value);
 			
-			switch(type) {
+			switch((int)table.get(row, STORAGE_TYPE)) {
 			case 2:
 				// 물리적 memory는하나뿐이므로 한번에 끝나고 
-				if (this.critical != null) {
-					this.critical.analyze(Critical.Resource.MEMORY, index, capacity, tmpValue);
-				}
+				analyze(Critical.Resource.MEMORY, index, capacity, tmpValue);
 				
 				this.agent.onSubmitTop(this.ip, SNMPAgent.Resource.MEMORY, new TopTable.Value(value, tmpValue *100 / capacity, index));
 				this.agent.onSubmitTop(this.ip, SNMPAgent.Resource.MEMORYRATE, new TopTable.Value(value, tmpValue *100 / capacity, index));
@@ -180,9 +245,7 @@ public class SNMPNode extends Node {
 				break;
 			case 4:
 				// 스토리지는 여러 볼륨중 가장 높은값을 submit
-				if (this.critical != null) {
-					this.critical.analyze(Critical.Resource.STORAGE, index, capacity, tmpValue);
-				}
+				analyze(Critical.Resource.STORAGE, index, capacity, tmpValue);
 				
 				if (max == null || max.getValue() < value) {
 					max = new TopTable.Value(value, tmpValue *100L / capacity, index);
@@ -203,16 +266,16 @@ public class SNMPNode extends Node {
 		}
 	}
 	
+	/**
+	 * 이전 주기 대비 변화량으로 bps 와 error 증가량을 계산하여 ifEntry 에 기록
+	 * @throws IOException
+	 */
 	private void parseInterface() throws IOException {
-		JSONObject
-			lastEntry = super.data.has("ifEntry")? super.data.getJSONObject("ifEntry"): null;
-		
-		if (lastEntry == null) {
-			return;
-		}
-		
-		JSONObject
-			data, lastData;
+		SampleTable
+			table = super.ifEntry,
+			lastTable = super.lastIFEntry;
+		String index;
+		int lastRow;
 		long 
 			iValue, oValue,
 			rate,
@@ -223,41 +286,40 @@ public class SNMPNode extends Node {
 			maxRate = null,
 			maxErr = null;
 		
-		for(String index: super.ifEntry.keySet()) {
+		for (int row=0, length=table.size(); row<length; row++) {
+			lastRow = lastTable.find(table.getIndex(row));
+			
 			// 특정 index가 새로 생성되었다면 보관된 값이 없을수도 있음.
-			if (!lastEntry.has(index)) {
+			if (lastRow < 0) {
 				continue;
 			}
 			
-			data = super.ifEntry.get(index);
-			capacity = 0;
-			
-			lastData = lastEntry.getJSONObject(index);
-			
-			if (!data.has("ifAdminStatus") || data.getInt("ifAdminStatus") != 1
-				|| !data.has("ifOperStatus") || data.getInt("ifOperStatus") != 1) {
+			if (table.get(row, IF_ADMIN_STATUS, 0) != 1 || table.get(row, IF_OPER_STATUS, 0) != 1) {
 				continue;
 			}
 			
+			index = Integer.toString(table.getIndex(row));
+			capacity = 0;
+			
 			//custom speed가 있는 경우
 			if (this.ifSpeed.has(index)) {
 				capacity = this.ifSpeed.getLong(index);
 			}
-			else if (data.has("ifHighSpeed")) {
-				capacity = data.getLong("ifHighSpeed");
+			else if (table.has(row, IF_HIGH_SPEED)) {
+				capacity = table.get(row, IF_HIGH_SPEED);
 			}
-			else if (capacity == 0 && data.has("ifSpeed")) {
-				capacity = data.getLong("ifSpeed");
+			else if (table.has(row, IF_SPEED)) {
+				capacity = table.get(row, IF_SPEED);
 			}
 			
 			if (capacity <= 0) {
 				continue;
 			}
 			
-			if (data.has("ifInErrors") && lastData.has("ifInErrors")) {
-				long value = data.getInt("ifInErrors") - lastData.getInt("ifInErrors");
+			if (table.has(row, IF_IN_ERRORS) && lastTable.has(lastRow, IF_IN_ERRORS)) {
+				long value = table.get(row, IF_IN_ERRORS) - lastTable.get(lastRow, IF_IN_ERRORS);
 				
-				data.put("ifInErrors", value);
+				table.set(row, IF_IN_ERRORS_DIFF, value);
 				
 				this.putData(Rolling.IFINERRORS, index, value);
 				
@@ -266,10 +328,10 @@ public class SNMPNode extends Node {
 				}
 			}
 			
-			if (data.has("ifOutErrors") && lastData.has("ifOutErrors")) {
-				long value = data.getInt("ifOutErrors") - lastData.getInt("ifOutErrors");
+			if (table.has(row, IF_OUT_ERRORS) && lastTable.has(lastRow, IF_OUT_ERRORS)) {
+				long value = table.get(row, IF_OUT_ERRORS) - lastTable.get(lastRow, IF_OUT_ERRORS);
 				
-				data.put("ifOutErrors", value);
+				table.set(row, IF_OUT_ERRORS_DIFF, value);
 				
 				this.putData(Rolling.IFOUTERRORS, index, value);
 				
@@ -278,26 +340,30 @@ public class SNMPNode extends Node {
 				}
 			}
 			
-			if (!data.has("timestamp") || !lastData.has("timestamp")) {
+			if (!table.has(row, IF_TIMESTAMP) || !lastTable.has(lastRow, IF_TIMESTAMP)) {
 				continue;
 			}
 				
-			duration = data.getLong("timestamp") - lastData.getLong("timestamp");
+			duration = table.get(row, IF_TIMESTAMP) - lastTable.get(lastRow, IF_TIMESTAMP);
+			
+			if (duration <= 0) {
+				continue;
+			}
 			
 			iValue = -1;
 			
-			if (data.has("ifHCInOctets") && lastData.has("ifHCInOctets")) {
-				iValue = data.getLong("ifHCInOctets") - lastData.getLong("ifHCInOctets");
+			if (table.has(row, IF_HC_IN_OCTETS) && lastTable.has(lastRow, IF_HC_IN_OCTETS)) {
+				iValue = table.get(row, IF_HC_IN_OCTETS) - lastTable.get(lastRow, IF_HC_IN_OCTETS);
 			}
 			
-			if (data.has("ifInOctets") && lastData.has("ifInOctets")) {
-				iValue = Math.max(iValue, data.getLong("ifInOctets") - lastData.getLong("ifInOctets"));
+			if (table.has(row, IF_IN_OCTETS) && lastTable.has(lastRow, IF_IN_OCTETS)) {
+				iValue = Math.max(iValue, table.get(row, IF_IN_OCTETS) - lastTable.get(lastRow, IF_IN_OCTETS));
 			}
 			
 			if (iValue  > -1) {
 				iValue = iValue *8000 / duration;
 				
-				data.put("ifInBPS", iValue);
+				table.set(row, IF_IN_BPS, iValue);
 				
 				this.putData(Rolling.IFINOCTETS, index, iValue);
 				
@@ -318,18 +384,18 @@ public class SNMPNode extends Node {
 			
 			oValue = -1;
 			
-			if (data.has("ifHCOutOctets") && lastData.has("ifHCOutOctets")) {
-				oValue = data.getLong("ifHCOutOctets") - lastData.getLong("ifHCOutOctets");
+			if (table.has(row, IF_HC_OUT_OCTETS) && lastTable.has(lastRow, IF_HC_OUT_OCTETS)) {
+				oValue = table.get(row, IF_HC_OUT_OCTETS) - lastTable.get(lastRow, IF_HC_OUT_OCTETS);
 			}
 			
-			if (data.has("ifOutOctets") && lastData.has("ifOutOctets")) {
-				oValue = Math.max(oValue, data.getLong("ifOutOctets") - lastData.getLong("ifOutOctets"));
+			if (table.has(row, IF_OUT_OCTETS) && lastTable.has(lastRow, IF_OUT_OCTETS)) {
+				oValue = Math.max(oValue, table.get(row, IF_OUT_OCTETS) - lastTable.get(lastRow, IF_OUT_OCTETS));
 			}
 			
 			if (oValue > -1) {
 				oValue = oValue *8000 / duration;
 				
-				data.put("ifOutBPS", oValue);
+				table.set(row, IF_OUT_BPS, oValue);
 				
 				this.putData(Rolling.IFOUTOCTETS, index, oValue);
 				
@@ -348,12 +414,8 @@ public class SNMPNode extends Node {
 				}
 			}
 			
-			if (this.critical != null) {
-				long value = Math.max(iValue, oValue);
-				
-				if (value > -1) {					
-					this.critical.analyze(Critical.Resource.THROUGHPUT, index, capacity, value);
-				}
+			if (Math.max(iValue, oValue) > -1) {
+				analyze(Critical.Resource.THROUGHPUT, index, capacity, Math.max(iValue, oValue));
 			}
 		}
 		
@@ -370,15 +432,44 @@ public class SNMPNode extends Node {
 		}
 	}
 	
-	public void parseTrap(OID trap, Variable variable) {
-		if (trap.startsWith(OID_TRAP)) {
-			if (trap.startsWith(OID_LINKUP)) {
-				
-			}
-			else if (trap.startsWith(OID_LINKDOWN)) {
+	/**
+	 * TrapReceiver 의 단일 thread 에서 호출됨
+	 * @param trap snmpTrapOID, v1 trap 은 변환된 값
+	 * @param variables
+	 * @return 기록할 log, 기록하지 않는 trap 이면 null
+	 */
+	public JSONObject parseTrap(OID trap, List<? extends VariableBinding> variables) {
+		boolean status;
+		
+		if (trap.startsWith(OID_LINKUP)) {
+			status = true;
+		}
+		else if (trap.startsWith(OID_LINKDOWN)) {
+			status = false;
+		}
+		else {
+			return null;
+		}
+		
+		int index = -1;
+		
+		for (VariableBinding vb : variables) {
+			if (vb.getOid().startsWith(RequestOID.ifIndex)) {
+				index = vb.getVariable().toInt();
 				
+				break;
 			}
 		}
+		
+		String name = index > -1? getIFName(index): "";
+		
+		return new JSONObject()
+			.put("origin", "trap")
+			.put("ip", this.ip)
+			.put("trap", trap.toDottedString())
+			.put("index", index)
+			.put("status", status)
+			.put("message", String.format("%s 인터페이스 %s %s", this.ip, name, status? "연결": "끊김"));
 	}
 	
 	public JSONObject test() {
@@ -386,7 +477,10 @@ public class SNMPNode extends Node {
 			.put("sysObjectID", super.data.has("sysObjectID")? super.data.getString("sysObjectID"): "")
 			.put("hrProcessorEntry", super.hrProcessorEntry.size())
 			.put("hrStorageEntry", super.hrStorageEntry.size())
-			.put("ifEntry", super.ifEntry.size());
+			.put("ifEntry", super.ifEntry.size())
+			.put("lag", this.schedule.getLag())
+			.put("pdu", super.getPDULimit())
+			.put("rto", super.getRTO());
 	}
 	
 	public long getLoad() {
@@ -448,8 +542,24 @@ public class SNMPNode extends Node {
 		this.ifSpeed = ifSpeed;
 	}
 	
+	/**
+	 * 단계별 소요시간은 node 와 agent 전체에 함께 기록
+	 */
+	@Override
+	protected void record(Phase phase, long nano) {
+		super.record(phase, nano);
+		
+		this.agent.record(phase, nano);
+	}
+	
 	@Override
 	protected void onResponse(boolean success) {
+		long cycle = getCycleStart();
+		long start = System.nanoTime();
+		
+		this.storeTime = 0;
+		this.criticalTime = 0;
+		
 		if (success) {
 			try {
 				parseResponseTime();
@@ -462,11 +572,23 @@ public class SNMPNode extends Node {
 			} catch (IOException ioe) {
 				Agent.syslog(Util.EToString(ioe));
 			}
+			
+			record(Phase.RATE, System.nanoTime() - start - this.storeTime - this.criticalTime);
+			record(Phase.CRITICAL, this.criticalTime);
 		}
 		
+		this.agent.onSubmitTop(this.ip, SNMPAgent.Resource.FAILURERATE, new TopTable.Value(this.getFailureRate(), this.getFailureRate(), "-1"));
+		
+		start = System.nanoTime();
+		
+		// node file 저장 후 다음 요청 예약
 		this.agent.onResponse(this.ip, success);
 		
-		this.agent.onSubmitTop(this.ip, SNMPAgent.Resource.FAILURERATE, new TopTable.Value(this.getFailureRate(), this.getFailureRate(), "-1"));
+		if (success) {
+			record(Phase.STORE, this.storeTime + System.nanoTime() - start);
+		}
+		
+		record(Phase.CYCLE, System.nanoTime() - cycle);
 	}
 
 	@Override
@@ -483,4 +605,13 @@ public class SNMPNode extends Node {
 		this.agent.onTimeout(this.ip, timeout);
 	}
 	
+	@Override
+	protected void onResize() {
+		try {
+			Util.putJSONtoFile(new File(this.nodeRoot, "pdu"), super.getPDULimit());
+		} catch (IOException ioe) {
+			Agent.syslog(Util.EToString(ioe));
+		}
+	}
+	
 }
\ No newline at end of file
@@ -16,16 +16,33 @@ public class TestNode extends TmpNode {
 	private String id;
 	
 	public TestNode(SNMPAgent agent, String ip, String id) {
-		super(agent, ip, Agent.MAX_TIMEOUT);
+		this(agent, ip, id, Agent.MAX_TIMEOUT);
+	}
+	
+	public TestNode(SNMPAgent agent, String ip, String id, long timeout) {
+		super(agent, ip, timeout);
 		
 		this.agent = agent;
 		
 		this.id = id;
-		// TODO Auto-generated constructor stub
 	}
 
+	/**
+	 * 등록 작업은 table 저장 등 blocking 작업이므로 transport thread 가 아닌 별도 thread 에서 처리.
+	 */
 	@Override
-	public void onSuccess(String profileName) {
+	public void onSuccess(final String profileName) {
+		Util.newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				register(profileName);
+			}
+			
+		}, "ITAhM SNMP Test "+ super.ip).start();
+	}
+	
+	private void register(String profileName) {
 		if (!this.agent.registerNode(this.ip, profileName)) {
 			return;
 		}			
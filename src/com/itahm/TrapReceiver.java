@@ -0,0 +1,295 @@
+package com.itahm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.snmp4j.CommandResponder;
+import org.snmp4j.CommandResponderEvent;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.MessageException;
+import org.snmp4j.PDU;
+import org.snmp4j.PDUv1;
+import org.snmp4j.Snmp;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.mp.StatusInformation;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.MultiThreadedMessageDispatcher;
+import org.snmp4j.util.ThreadPool;
+
+import com.itahm.json.JSONObject;
+import com.itahm.util.Util;
+
+/**
+ * trap, inform 수신.
+ * decoding 은 worker pool 에서, node 로의 전달과 log 기록은 하나의 thread 에서 묶음 단위로 처리한다.
+ * queue 가 가득 차면 수신한 trap 은 버리고 drop 으로 센다. polling 은 영향을 받지 않는다.
+ */
+public class TrapReceiver implements CommandResponder, Runnable, Closeable {
+	
+	public final static int PORT = 162;
+	private final static int QUEUE = 65536;
+	private final static int BATCH = 1024;
+	// 대량 수신시 socket buffer 에서 버려지지 않도록
+	private final static int BUFFER = 4 *1024 *1024;
+	private final static int WORKER = Runtime.getRuntime().availableProcessors();
+	// trap v1 의 generic trap 을 v2 trap oid 로 변환
+	private final static OID OID_TRAPS = new OID(new int [] {1,3,6,1,6,3,1,1,5});
+	private final static OID OID_TRAP_OID = new OID(new int [] {1,3,6,1,6,3,1,1,4,1,0});
+	
+	private static class Trap {
+		private final String ip;
+		private final OID oid;
+		private final List<? extends VariableBinding> variables;
+		
+		private Trap(String ip, OID oid, List<? extends VariableBinding> variables) {
+			this.ip = ip;
+			this.oid = oid;
+			this.variables = variables;
+		}
+	}
+	
+	private final SNMPAgent agent;
+	private final ThreadPool pool;
+	private final Snmp snmp;
+	private final BlockingQueue<Trap> queue = new ArrayBlockingQueue<>(QUEUE);
+	private final Thread thread;
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong unknown = new AtomicLong();
+	private final AtomicLong invalid = new AtomicLong();
+	private long processed = 0;
+	private long batches = 0;
+	private long logged = 0;
+	private volatile boolean isClosed = false;
+	
+	public TrapReceiver(SNMPAgent agent) throws IOException {
+		DefaultUdpTransportMapping transport = new DefaultUdpTransportMapping(new UdpAddress("0.0.0.0/"+ PORT));
+		
+		this.agent = agent;
+		
+		transport.setReceiveBufferSize(BUFFER);
+		
+		pool = ThreadPool.create("ITAhM Trap Worker", WORKER);
+		
+		MultiThreadedMessageDispatcher dispatcher = new MultiThreadedMessageDispatcher(pool, new MessageDispatcherImpl());
+		
+		// v3 는 SNMPAgent 가 등록한 USM 을 공유
+		dispatcher.addMessageProcessingModel(new MPv1());
+		dispatcher.addMessageProcessingModel(new MPv2c());
+		dispatcher.addMessageProcessingModel(new MPv3());
+		
+		snmp = new Snmp(dispatcher, transport);
+		
+		snmp.addCommandResponder(this);
+		
+		thread = Util.newThread(this, "ITAhM Trap Receiver");
+		
+		thread.setDaemon(true);
+		
+		try {
+			snmp.listen();
+		}
+		catch (IOException ioe) {
+			this.pool.stop();
+			
+			throw ioe;
+		}
+		
+		thread.start();
+		
+		System.out.println("SNMP trap receiver start.");
+	}
+	
+	/**
+	 * worker pool 에서 호출됨, blocking 하지 않는다.
+	 */
+	@Override
+	public void processPdu(CommandResponderEvent event) {
+		PDU pdu = event.getPDU();
+		Address address = event.getPeerAddress();
+		OID oid;
+		
+		if (pdu == null || !(address instanceof UdpAddress)) {
+			return;
+		}
+		
+		switch (pdu.getType()) {
+		case PDU.V1TRAP:
+			oid = getTrapOID((PDUv1)pdu);
+			
+			break;
+		case PDU.INFORM:
+			acknowledge(event);
+			
+			// inform 도 trap 과 같이 처리
+			oid = getTrapOID(pdu);
+			
+			break;
+		case PDU.TRAP:
+			oid = getTrapOID(pdu);
+			
+			break;
+		default:
+			return;
+		}
+		
+		event.setProcessed(true);
+		
+		this.received.incrementAndGet();
+		
+		if (oid == null) {
+			this.invalid.incrementAndGet();
+			
+			return;
+		}
+		
+		if (!this.queue.offer(new Trap(((UdpAddress)address).getInetAddress().getHostAddress(), oid, pdu.getVariableBindings()))) {
+			this.dropped.incrementAndGet();
+		}
+	}
+	
+	private void acknowledge(CommandResponderEvent event) {
+		PDU response = event.getPDU();
+		
+		response.setErrorIndex(0);
+		response.setErrorStatus(PDU.noError);
+		response.setType(PDU.RESPONSE);
+		
+		try {
+			event.getMessageDispatcher().returnResponsePdu(event.getMessageProcessingModel(), event.getSecurityModel(),
+				event.getSecurityName(), event.getSecurityLevel(), response, event.getMaxSizeResponsePDU(),
+				event.getStateReference(), new StatusInformation());
+		} catch (MessageException me) {
+			Agent.syslog(Util.EToString(me));
+		}
+	}
+	
+	private static OID getTrapOID(PDUv1 pdu) {
+		int generic = pdu.getGenericTrap();
+		
+		if (generic == PDUv1.ENTERPRISE_SPECIFIC) {
+			OID enterprise = pdu.getEnterprise();
+			
+			if (enterprise == null) {
+				return null;
+			}
+			
+			return new OID(enterprise).append(0).append(pdu.getSpecificTrap());
+		}
+		
+		return new OID(OID_TRAPS).append(generic +1);
+	}
+	
+	private static OID getTrapOID(PDU pdu) {
+		for (VariableBinding vb : pdu.getVariableBindings()) {
+			if (OID_TRAP_OID.equals(vb.getOid()) && vb.getVariable() instanceof OID) {
+				return (OID)vb.getVariable();
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public void run() {
+		List<Trap> batch = new ArrayList<>(BATCH);
+		List<JSONObject> logs = new ArrayList<>();
+		SNMPNode node;
+		JSONObject log;
+		Trap trap;
+		
+		while (!this.isClosed) {
+			try {
+				trap = this.queue.poll(1, TimeUnit.SECONDS);
+			} catch (InterruptedException ie) {
+				break;
+			}
+			
+			if (trap == null) {
+				continue;
+			}
+			
+			batch.add(trap);
+			
+			this.queue.drainTo(batch, BATCH -1);
+			
+			for (int i=0, _i=batch.size(); i<_i; i++) {
+				trap = batch.get(i);
+				
+				node = this.agent.getNode(trap.ip);
+				
+				if (node == null) {
+					this.unknown.incrementAndGet();
+					
+					continue;
+				}
+				
+				log = node.parseTrap(trap.oid, trap.variables);
+				
+				if (log != null) {
+					logs.add(log);
+				}
+			}
+			
+			// 묶음 당 한번만 기록
+			if (logs.size() > 0) {
+				Agent.log(logs, false);
+			}
+			
+			synchronized(this) {
+				this.processed += batch.size();
+				this.logged += logs.size();
+				this.batches++;
+			}
+			
+			batch.clear();
+			logs.clear();
+		}
+	}
+	
+	public JSONObject getStatus() {
+		JSONObject status = new JSONObject()
+			.put("received", this.received.get())
+			.put("dropped", this.dropped.get())
+			.put("unknown", this.unknown.get())
+			.put("invalid", this.invalid.get())
+			.put("queue", this.queue.size());
+		
+		synchronized(this) {
+			status
+				.put("processed", this.processed)
+				.put("logged", this.logged)
+				.put("batches", this.batches);
+		}
+		
+		return status;
+	}
+	
+	@Override
+	public void close() {
+		this.isClosed = true;
+		
+		try {
+			this.snmp.close();
+		} catch (IOException ioe) {
+			Agent.syslog(Util.EToString(ioe));
+		}
+		
+		this.pool.stop();
+		
+		this.thread.interrupt();
+	}
+
+}
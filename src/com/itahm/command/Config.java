@@ -29,13 +29,33 @@ public class Config implements Command {
 				break;
 			case "sms":
 			case "menu":
+			case "precheck":
 				Agent.config(key, data.getBoolean("value"));
 				
 				break;
 			case "interval":
 			case "top":
+			case "maxRepetitions":
+			case "retry":
+			case "transport":
+			case "discoveryRate":
+			case "process":
+			case "flapCount":
 				Agent.config(key, data.getInt("value"));
 			
+				break;
+			case "maxInflight":
+			case "maxPPS":
+				Agent.config(key, data.getInt("value"));
+				
+				Agent.setAdmission();
+				
+				break;
+			case "icmpRate":
+				Agent.config(key, data.getInt("value"));
+				
+				Agent.setICMPRate();
+				
 				break;
 			case "iftype":
 				String iftype = data.getString("value");
@@ -45,6 +65,10 @@ public class Config implements Command {
 				Agent.setValidIFType(iftype);
 				break;
 			case "requestTimer":
+			case "staticTimer":
+			case "snapshotTimer":
+			case "flapHalfLife":
+			case "walSync":
 				Agent.config(key, data.getLong("value"));
 				
 				break;
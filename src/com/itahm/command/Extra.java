@@ -1,15 +1,12 @@
 package com.itahm.command;
 
 import java.io.IOException;
-import java.net.InetAddress;
-import java.util.Iterator;
 
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
 import com.itahm.Agent;
 import com.itahm.http.Request;
 import com.itahm.http.Response;
-import com.itahm.util.Network;
 
 public class Extra implements Command {
 	
@@ -34,14 +31,65 @@ public class Extra implements Command {
 				
 				return Response.getInstance(Response.Status.OK, json.toString());
 			case "search":
-				Network network = new Network(InetAddress.getByName(data.getString("network")).getAddress(), data.getInt("mask"));
-				Iterator<String> it = network.iterator();
+				return Response.getInstance(Response.Status.OK,
+					Agent.search(data.getString("network"), data.getInt("mask")).toString());
+			case "discovery":
+				json = Agent.getDiscovery();
 				
-				while(it.hasNext()) {
-					Agent.testSNMPNode(it.next(), null);
+				if (json == null) {
+					return Response.getInstance(Response.Status.BADREQUEST,
+						new JSONObject().put("error", "discovery not found").toString());
 				}
 				
-				return Response.getInstance(Response.Status.OK);
+				return Response.getInstance(Response.Status.OK, json.toString());
+			case "trap":
+				json = Agent.getTrap();
+				
+				if (json == null) {
+					return Response.getInstance(Response.Status.BADREQUEST,
+						new JSONObject().put("error", "trap receiver not running").toString());
+				}
+				
+				return Response.getInstance(Response.Status.OK, json.toString());
+			case "phase":
+				if (data.has("clear") && data.getBoolean("clear")) {
+					Agent.clearPhase();
+					
+					return Response.getInstance(Response.Status.OK);
+				}
+				
+				json = Agent.getPhase(data.has("ip")? data.getString("ip"): null, data.has("count")? data.getInt("count"): DEF_TOP_CNT);
+				
+				if (json == null) {
+					return Response.getInstance(Response.Status.BADREQUEST,
+						new JSONObject().put("error", "node not found").toString());
+				}
+				
+				return Response.getInstance(Response.Status.OK, json.toString());
+			case "process":
+				json = Agent.getProcess(data.getString("ip"), data.has("request") && data.getBoolean("request"));
+				
+				if (json == null) {
+					return Response.getInstance(Response.Status.BADREQUEST,
+						new JSONObject().put("error", "node not found").toString());
+				}
+				
+				return Response.getInstance(Response.Status.OK, json.toString());
+			case "budget":
+				return Response.getInstance(Response.Status.OK, Agent.getBudget().toString());
+			case "snapshot":
+				return Response.getInstance(Response.Status.OK, Agent.getSnapshot().toString());
+			case "icmp":
+				return Response.getInstance(Response.Status.OK, Agent.getICMP().toString());
+			case "wal":
+				json = Agent.getRollingLog();
+				
+				if (json == null) {
+					return Response.getInstance(Response.Status.BADREQUEST,
+						new JSONObject().put("error", "rolling log disabled").toString());
+				}
+				
+				return Response.getInstance(Response.Status.OK, json.toString());
 			case "message":
 				Agent.sendEvent(data.getString("message"));
 				
@@ -4,114 +4,132 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
-public class ICMPNode implements Runnable, Closeable {
+import com.itahm.util.WheelTimer;
 
+/**
+ * ICMPSweeper 가 확인하는 대상. thread 를 갖지 않으며 확인은 sweeper 의 worker 에서 이루어진다.
+ */
+public class ICMPNode implements Closeable {
+	
+	private final ICMPSweeper sweeper;
 	private final ICMPListener listener;
-	private final InetAddress target;
-	private final Thread thread;
 	private final int [] timeouts;
 	private final int retry;
-	private final BlockingQueue<Long> bq = new LinkedBlockingQueue<>();
+	// 이번 확인의 시도 순번과 시작 시각
+	private int attempt;
+	private long sent;
+	private volatile boolean isClosed = false;
+	
+	final InetAddress target;
+	/**
+	 * 다음 확인을 위한 schedule, node 마다 하나만 생성하여 재사용
+	 */
+	final WheelTimer.Task task = new WheelTimer.Task() {
+		
+		@Override
+		protected void execute() {
+			sweeper.submit(ICMPNode.this);
+		}
+	};
 	
 	public final String ip;
 	
-	public ICMPNode(ICMPListener listener, String ip, int [] timeouts) throws UnknownHostException {
+	public ICMPNode(ICMPSweeper sweeper, ICMPListener listener, String ip, int [] timeouts) throws UnknownHostException {
+		this.sweeper = sweeper;
 		this.listener = listener;
 		this.ip = ip;
 		this.timeouts = timeouts;
 		
 		target = InetAddress.getByName(ip);
 		retry = timeouts.length;
+	}
+	
+	/**
+	 * delay 후 확인, 결과는 listener 로
+	 * @param delay
+	 */
+	public void ping(long delay) {
+		if (this.isClosed) {
+			return;
+		}
 		
-		thread = new Thread(this);
+		synchronized(this) {
+			this.attempt = 0;
+		}
 		
-		thread.setName("ITAhM ICMPNode "+ ip);
+		this.sweeper.schedule(this, delay);
+	}
+	
+	/**
+	 * 확인 직전에 호출
+	 * @return 이번 시도의 timeout
+	 */
+	synchronized int getTimeout() {
+		if (this.attempt == 0) {
+			this.sent = System.currentTimeMillis();
+		}
 		
-		thread.start();
+		return this.timeouts[Math.min(this.attempt, this.retry -1)];
 	}
 	
-	@Override
-	public void run() {
-		long delay, sent;
+	boolean isClosed() {
+		return this.isClosed;
+	}
+	
+	void onSuccess() {
+		long time;
 		
-		init: while (!this.thread.isInterrupted()) {
-			try {
-				try {
-					delay = this.bq.take();
-					
-					if (delay > 0) {
-						Thread.sleep(delay);
-					}
-					else if (delay < 0) {
-						throw new InterruptedException();
-					}
-					
-					sent = System.currentTimeMillis();
-					
-					for (int i=0; i < retry; i++) {
-						if (this.thread.isInterrupted()) {
-							throw new InterruptedException();
-						}
-						
-						if (this.target.isReachable(timeouts[i])) {
-							this.listener.onSuccess(this, System.currentTimeMillis() - sent);
-							
-							continue init;
-						}
-					}
-					
-				} catch (IOException e) {}
-				
-				this.listener.onFailure(this);
-				
-			} catch (InterruptedException e) {
-				
-				break;
-			}
+		synchronized(this) {
+			time = System.currentTimeMillis() - this.sent;
 		}
+		
+		this.listener.onSuccess(this, time);
 	}
 	
-	public void ping(long delay) {
-		try {
-			this.bq.put(delay);
-		} catch (InterruptedException e) {
+	/**
+	 *
+	 * @return true 이면 모든 timeout 을 시도하여 실패로 끝남, false 이면 다음 timeout 으로 재시도
+	 */
+	boolean onFailure() {
+		synchronized(this) {
+			if (++this.attempt < this.retry) {
+				return false;
+			}
 		}
+		
+		this.listener.onFailure(this);
+		
+		return true;
 	}
-
+	
+	/**
+	 * 진행중인 확인은 결과를 전달하지 않고 끝난다
+	 * @param gracefully 사용하지 않음, thread 가 없으므로 기다릴 것이 없다
+	 * @throws IOException
+	 */
 	public void close(boolean gracefully) throws IOException {
 		close();
-		
-		if (gracefully) {
-			try {
-				this.thread.join();
-			} catch (InterruptedException e) {}
-		}
 	}
 	
 	@Override
 	public void close() throws IOException {
-		this.thread.interrupt();
-		
-		try {
-			this.bq.put(-1L);
-		} catch (InterruptedException ie) {}
+		this.isClosed = true;
 	}
 	
 	public static void main(String [] args) throws IOException {
-		ICMPNode node = new ICMPNode(new ICMPListener() {
+		ICMPSweeper sweeper = new ICMPSweeper(args.length > 1? new TCPProber(Integer.parseInt(args[1])): Prober.ICMP, 16, 100);
+		ICMPNode node = new ICMPNode(sweeper, new ICMPListener() {
 			@Override
 			public void onSuccess(ICMPNode node, long time) {
-				System.out.println("success");
+				System.out.println("success "+ time);
 			}
-
+			
 			@Override
 			public void onFailure(ICMPNode node) {
 				System.out.println("failure");
 			}
-		}, "192.168.0.100", new int [] {1000, 1000, 1000, 1000, 1000});
+		}, args.length > 0? args[0]: "192.168.0.100", new int [] {1000, 1000, 1000, 1000, 1000});
 		
 		root: while (true) {
 			switch (System.in.read()) {
@@ -125,6 +143,7 @@ public class ICMPNode implements Runnable, Closeable {
 			}
 		}
 		
+		sweeper.close();
 	}
-	
+
 }
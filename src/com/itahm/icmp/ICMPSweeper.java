@@ -0,0 +1,171 @@
+package com.itahm.icmp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.itahm.json.JSONObject;
+import com.itahm.util.RateLimiter;
+import com.itahm.util.Util;
+import com.itahm.util.WheelTimer;
+
+/**
+ * 모든 ICMPNode 의 확인을 하나의 timing wheel 로 예약하고
+ * 동시에 진행중인 확인 수와 초당 확인 수를 제한한다.
+ * node 수는 thread 수가 아니라 확인 속도로 제한된다.
+ */
+public class ICMPSweeper implements Closeable {
+	
+	private final static long TICK = 100;
+	private final static int WHEEL = 512;
+	
+	private final Prober prober;
+	private final WheelTimer wheel;
+	private final ExecutorService executor;
+	private final Semaphore inflight;
+	private final RateLimiter limiter;
+	private final AtomicLong probes = new AtomicLong();
+	private final AtomicLong success = new AtomicLong();
+	private final AtomicLong failure = new AtomicLong();
+	private volatile boolean isClosed = false;
+	
+	/**
+	 *
+	 * @param prober
+	 * @param maxInflight 동시에 진행중인 확인 수
+	 * @param rate 초당 확인 수
+	 */
+	public ICMPSweeper(Prober prober, int maxInflight, double rate) {
+		this.prober = prober;
+		
+		inflight = new Semaphore(Math.max(1, maxInflight));
+		limiter = new RateLimiter(Math.max(1, rate));
+		executor = Util.newExecutor(Math.max(1, maxInflight), "ITAhM ICMP Worker");
+		wheel = new WheelTimer("ITAhM ICMP Scheduler", TICK, WHEEL, executor);
+	}
+	
+	public void setRate(double rate) {
+		this.limiter.setRate(Math.max(1, rate));
+	}
+	
+	/**
+	 * 확인과 같은 timing wheel 에서 실행할 작업
+	 * @param task
+	 * @param delay
+	 * @return 이미 예약되어 있으면 false
+	 */
+	public boolean schedule(WheelTimer.Task task, long delay) {
+		if (this.isClosed) {
+			return false;
+		}
+		
+		return this.wheel.schedule(task, delay);
+	}
+	
+	/**
+	 * delay 후에 node 의 확인 시작
+	 * @param node
+	 * @param delay
+	 */
+	void schedule(ICMPNode node, long delay) {
+		if (this.isClosed) {
+			return;
+		}
+		
+		if (delay > 0) {
+			this.wheel.schedule(node.task, delay);
+		}
+		else {
+			submit(node);
+		}
+	}
+	
+	/**
+	 * 한번의 확인, 실패하면 node 의 다음 timeout 으로 바로 다시 확인
+	 * @param node
+	 */
+	void submit(final ICMPNode node) {
+		try {
+			this.executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					probe(node);
+				}
+				
+			});
+		}
+		catch (RejectedExecutionException ree) {
+			// 종료됨
+		}
+	}
+	
+	private void probe(ICMPNode node) {
+		boolean reachable = false;
+		
+		if (node.isClosed()) {
+			return;
+		}
+		
+		try {
+			this.inflight.acquire();
+		} catch (InterruptedException ie) {
+			return;
+		}
+		
+		try {
+			this.limiter.acquire(1);
+			
+			if (node.isClosed()) {
+				return;
+			}
+			
+			this.probes.incrementAndGet();
+			
+			reachable = this.prober.probe(node.target, node.getTimeout());
+		}
+		catch (InterruptedException ie) {
+			return;
+		}
+		catch (IOException ioe) {
+			reachable = false;
+		}
+		finally {
+			this.inflight.release();
+		}
+		
+		if (reachable) {
+			this.success.incrementAndGet();
+			
+			node.onSuccess();
+		}
+		else if (node.onFailure()) {
+			this.failure.incrementAndGet();
+		}
+		else {
+			// 다음 timeout 으로 재시도
+			submit(node);
+		}
+	}
+	
+	public JSONObject getStatus() {
+		return new JSONObject()
+			.put("probes", this.probes.get())
+			.put("success", this.success.get())
+			.put("failure", this.failure.get())
+			.put("lag", this.wheel.getLag());
+	}
+	
+	@Override
+	public void close() {
+		this.isClosed = true;
+		
+		this.wheel.close();
+		
+		this.executor.shutdownNow();
+	}
+
+}
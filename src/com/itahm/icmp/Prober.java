@@ -0,0 +1,31 @@
+package com.itahm.icmp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * 도달 가능성 확인 방법, 호출 thread 에서 응답 또는 timeout 까지 기다린다.
+ */
+public interface Prober {
+	
+	/**
+	 * 
+	 * @param target
+	 * @param timeout milliseconds
+	 * @return 응답이 있으면 true
+	 * @throws IOException
+	 */
+	public boolean probe(InetAddress target, int timeout) throws IOException;
+	
+	/**
+	 * InetAddress.isReachable, 권한이 있으면 ICMP echo 없으면 TCP echo(7)
+	 */
+	public final static Prober ICMP = new Prober() {
+		
+		@Override
+		public boolean probe(InetAddress target, int timeout) throws IOException {
+			return target.isReachable(timeout);
+		}
+	};
+
+}
@@ -0,0 +1,37 @@
+package com.itahm.icmp;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * TCP 연결로 도달 가능성 확인. ICMP 를 사용할 수 없는 환경이나 시험용.
+ * 연결이 거부(RST) 되어도 host 는 응답한 것으로 본다.
+ */
+public class TCPProber implements Prober {
+	
+	private final int port;
+	
+	public TCPProber(int port) {
+		this.port = port;
+	}
+	
+	@Override
+	public boolean probe(InetAddress target, int timeout) throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(target, this.port), timeout);
+			
+			return true;
+		}
+		catch (ConnectException ce) {
+			return true;
+		}
+		catch (SocketTimeoutException ste) {
+			return false;
+		}
+	}
+
+}
@@ -13,14 +13,23 @@ public class JSONData extends Data{
 		// TODO Auto-generated constructor stub
 	}
 	
+	/**
+	 * 이전 형식의 날짜 디렉토리를 먼저 읽고 segment 를 읽는다. 같은 시각이면 segment 가 우선한다.
+	 */
 	@Override
 	public void buildNext(File dir) throws IOException {
 		File [] fa = dir.listFiles();
 		
-		if (fa == null) {
-			return;
+		if (fa != null) {
+			buildLegacy(fa);
 		}
 		
+		for (long [] record : SegmentFile.read(new File(dir.getParentFile(), dir.getName() + SegmentFile.DATA), SegmentFile.DATA_FIELDS)) {
+			super.put(Long.toString(record[0]), record[1]);
+		}
+	}
+	
+	private void buildLegacy(File [] fa) throws IOException {
 		JSONObject data;
 		
 		for (File f : fa) {
@@ -12,10 +12,28 @@ public class JSONSummary extends Data {
 		super(f);
 	}
 
+	/**
+	 * 이전 형식의 summary 파일을 먼저 읽고 segment 를 읽는다. 같은 시각이면 segment 가 우선한다.
+	 */
 	@Override
 	public void buildNext(File dir) {
 		File file = new File(dir, "summary");
 		
+		buildLegacy(file);
+		
+		try {
+			for (long [] record : SegmentFile.read(new File(dir.getParentFile(), dir.getName() + SegmentFile.SUMMARY), SegmentFile.SUMMARY_FIELDS)) {
+				super.put(Long.toString(record[0]), new JSONObject()
+					.put("avg", record[1])
+					.put("max", record[2])
+					.put("min", record[3]));
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private void buildLegacy(File file) {
 		if (file.isFile()) {
 			try {	
 				JSONObject data = Util.getJSONFromFile(file);
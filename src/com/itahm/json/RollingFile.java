@@ -3,16 +3,24 @@ package com.itahm.json;
 import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
 
 import com.itahm.json.JSONObject;
-import com.itahm.util.Util;
 
 /**
  * The Class RollingFile.
+ * 현재 시간의 data 는 메모리에 두고, 시간이 바뀌면 그 시간의 분단위 값과 요약을 날짜별 SegmentFile 에 덧붙인다.
  */
 public class RollingFile {
 	
+	/**
+	 * 모든 RollingFile 이 공유하는 write-ahead log, null 이면 사용하지 않음
+	 */
+	private static RollingLog log;
+	
 	private long load;
 	
 	/** The lastHour. */
@@ -21,14 +29,13 @@ public class RollingFile {
 	
 	/** rollingRoot, itahm/snmp/ip address/resource/index */
 	private final File root;
+	private final String path;
 	
-	private File summaryFile;
+	// 현재 시간의 요약만
 	private JSONObject summaryData;
 	private JSONObject summary;
 	private String summaryHour;
 	
-	private File dayDirectory;
-	private File hourFile;
 	private JSONObject hourData;
 	private long max;
 	private long min;
@@ -47,6 +54,8 @@ public class RollingFile {
 		root = new File(rscRoot, index);
 		root.mkdir();
 		
+		path = root.getPath();
+		
 		this.lastHour = c.getTimeInMillis();
 		this.summaryHour = Long.toString(this.lastHour);
 				
@@ -54,54 +63,59 @@ public class RollingFile {
 		
 		this.lastDay = c.getTimeInMillis();
 		
-		this.dayDirectory = new File(this.root, Long.toString(this.lastDay));
-		this.dayDirectory.mkdir();
-		
-		// summary file 생성
-		this.summaryFile = new File(this.dayDirectory, "summary");
+		this.summaryData = new JSONObject();
+		this.summaryData.put(this.summaryHour, summary = new JSONObject());
 		
-		// 존재하면 load
-		if (this.summaryFile.isFile()) {
-			this.summaryData = Util.getJSONFromFile(this.summaryFile);
-		}
+		this.hourData = new JSONObject();
+	}
+	
+	public static void setLog(RollingLog log) {
+		RollingFile.log = log;
+	}
+	
+	/**
+	 * replay 된 현재 시간의 data 가 있으면 이어받는다
+	 * @param rscRoot
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	public static RollingFile getInstance(File rscRoot, String index) throws IOException {
+		RollingLog log = RollingFile.log;
+		RollingFile rollingFile = log == null? null: log.adopt(new File(rscRoot, index).getPath());
 		
-		// 존재하지 않거나 파일에 문제가 있는 경우
-		if (this.summaryData == null) {
-			Util.putJSONtoFile(this.summaryFile, this.summaryData = new JSONObject());
-		}
+		return rollingFile == null? new RollingFile(rscRoot, index): rollingFile;
+	}
+	
+	public void roll(long value, int interval) throws IOException {
+		Calendar c = Calendar.getInstance();
+		long minMills;
 		
-		if (this.summaryData.has(this.summaryHour)) {
-			summary = this.summaryData.getJSONObject(this.summaryHour);
-		}
-		else {
-			this.summaryData.put(this.summaryHour, summary = new JSONObject());
-		}
+		c.set(Calendar.MILLISECOND, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MINUTE, c.get(Calendar.MINUTE) /interval * interval);
 		
-		// hourly file 생성
-		this.hourFile = new File(this.dayDirectory, this.summaryHour);
+		minMills = c.getTimeInMillis();
 		
-		// 존재하면 load
-		if (this.hourFile.isFile()) {
-			this.hourData = Util.getJSONFromFile(this.hourFile);
-		}
+		apply(minMills, value);
 		
-		// 존재하지 않거나 파일에 문제가 있는 경우
-		if (this.hourData == null) {
-			Util.putJSONtoFile(this.hourFile, this.hourData = new JSONObject());
+		if (log != null) {
+			log.append(this.path, minMills, value);
 		}
 	}
 	
-	public void roll(long value, int interval) throws IOException {
+	/**
+	 * 
+	 * @param minMills interval 단위로 자른 시각
+	 * @param value
+	 * @throws IOException
+	 */
+	void apply(long minMills, long value) throws IOException {
 		Calendar c = Calendar.getInstance();
-		String minString;
+		String minString = Long.toString(minMills);
 		long hourMills, dayMills, elapse;
-
-		c.set(Calendar.MILLISECOND, 0);
-		c.set(Calendar.SECOND, 0);
-		c.set(Calendar.MINUTE, c.get(Calendar.MINUTE) /interval * interval);
-		
-		minString = Long.toString(c.getTimeInMillis());
 		
+		c.setTimeInMillis(minMills);
 		c.set(Calendar.MINUTE, 0);
 		hourMills = c.getTimeInMillis();
 		
@@ -112,32 +126,19 @@ public class RollingFile {
 			
 			elapse = System.currentTimeMillis();
 			
-			Util.putJSONtoFile(this.summaryFile, this.summaryData);
-			Util.putJSONtoFile(this.hourFile, this.hourData);
+			store();
 			
 			this.load = System.currentTimeMillis() - elapse;
 			
 			c.set(Calendar.HOUR_OF_DAY, 0);
 			dayMills = c.getTimeInMillis();
 			
-			if (this.lastDay != dayMills) {
-				this.lastDay = dayMills;
-				
-				// day directory 생성
-				this.dayDirectory = new File(this.root, Long.toString(dayMills));
-				this.dayDirectory.mkdir();
-				
-				// summary file 생성
-				this.summaryFile = new File(this.dayDirectory, "summary");
-				this.summaryData = new JSONObject();
-			}
-			
-			// hourly file 생성
+			this.lastDay = dayMills;
 			this.lastHour = hourMills;
 			this.summaryHour = Long.toString(hourMills);
-			this.hourFile = new File(this.dayDirectory, this.summaryHour);
 			this.hourData = new JSONObject();
 			this.summaryCount = 0;
+			this.summaryData = new JSONObject();
 			this.summaryData.put(this.summaryHour, this.summary = new JSONObject());
 		}
 		
@@ -202,6 +203,43 @@ public class RollingFile {
 		return data;
 	}
 	
+	boolean isCurrent(long hourMills) {
+		return this.lastHour == hourMills;
+	}
+	
+	/**
+	 * 지난 시간의 분단위 값과 요약을 그 날짜의 segment 에 추가, 이미 기록된 시간이면 (replay) 하지 않음
+	 * @throws IOException
+	 */
+	void store() throws IOException {
+		List<long []> records = new ArrayList<>();
+		File summaryFile = SegmentFile.getFile(this.root, this.lastDay, SegmentFile.SUMMARY);
+		
+		if (this.hourData.length() == 0) {
+			return;
+		}
+		
+		for (long [] record : SegmentFile.read(summaryFile, SegmentFile.SUMMARY_FIELDS)) {
+			if (record[0] == this.lastHour) {
+				return;
+			}
+		}
+		
+		for (Object key : this.hourData.keySet()) {
+			records.add(new long [] {Long.parseLong((String)key), this.hourData.getLong((String)key)});
+		}
+		
+		Collections.sort(records, SegmentFile.BY_TIME);
+		
+		SegmentFile.append(SegmentFile.getFile(this.root, this.lastDay, SegmentFile.DATA), this.lastDay, SegmentFile.DATA_FIELDS, records);
+		
+		records.clear();
+		
+		records.add(new long [] {this.lastHour, this.summary.getLong("avg"), this.summary.getLong("max"), this.summary.getLong("min")});
+		
+		SegmentFile.append(summaryFile, this.lastDay, SegmentFile.SUMMARY_FIELDS, records);
+	}
+	
 	private void calcSummary() {
 		BigInteger sum = BigInteger.valueOf(0);
 		int count = 0;
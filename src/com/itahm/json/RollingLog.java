@@ -0,0 +1,399 @@
+package com.itahm.json;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.itahm.util.Util;
+
+/**
+ * 모든 RollingFile 이 공유하는 write-ahead log.
+ * roll 할 때마다 값을 메모리 buffer 에 쌓고 interval 주기로 한번에 기록 후 fsync 한다 (group commit).
+ * log 파일은 시간마다 새로 만들고 RETAIN 이 지나면 지운다. 그 사이에 모든 RollingFile 이 지난 시간을 segment 에 기록한다.
+ * 시작할 때 남아있는 log 를 replay 하여 지난 시간은 segment 에 기록하고 현재 시간은 RollingFile 이 이어받는다.
+ *
+ * entry: 1 경로 정의 id(4) 길이(2) 경로, 2 값 id(4) 분(8) 값(8)
+ * 경로 id 는 파일마다 새로 매긴다.
+ */
+public class RollingLog implements Runnable, Closeable {
+	
+	private final static int MAGIC = 0x4954574C; // ITWL
+	private final static byte VERSION = 1;
+	private final static byte PATH = 1;
+	private final static byte VALUE = 2;
+	private final static long HOUR = 60 * 60 * 1000L;
+	private final static long RETAIN = 2 * HOUR;
+	
+	private final File root;
+	private final long interval;
+	private final Thread thread;
+	// replay 후 현재 시간의 data 를 가진 RollingFile, 경로별
+	private final Map<String, RollingFile> pending = new ConcurrentHashMap<>();
+	private final Map<String, Integer> ids = new HashMap<>();
+	private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private DataOutputStream out = new DataOutputStream(buffer);
+	private RandomAccessFile file;
+	private long fileHour = -1;
+	private long appended = 0;
+	private long synced = 0;
+	private long syncs = 0;
+	private long lastSync = 0;
+	private long lastDuration = 0;
+	private volatile boolean isClosed = false;
+	
+	/**
+	 *
+	 * @param root log 디렉토리
+	 * @param interval fsync 주기 milliseconds
+	 * @throws IOException
+	 */
+	public RollingLog(File root, long interval) throws IOException {
+		this.root = root;
+		this.interval = Math.max(1, interval);
+		
+		root.mkdirs();
+		
+		replay();
+		
+		thread = Util.newThread(this, "ITAhM Rolling Log");
+		
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	private static long toHour(long mills) {
+		Calendar c = Calendar.getInstance();
+		
+		c.setTimeInMillis(mills);
+		c.set(Calendar.MILLISECOND, 0);
+		c.set(Calendar.SECOND, 0);
+		c.set(Calendar.MINUTE, 0);
+		
+		return c.getTimeInMillis();
+	}
+	
+	/**
+	 * 남아있는 log 를 순서대로 적용한다.
+	 * 지난 시간은 segment 에 기록하고 (이미 기록된 시간은 제외), 현재 시간은 pending 으로 남긴다.
+	 * @throws IOException
+	 */
+	private void replay() throws IOException {
+		Map<String, RollingFile> files = new HashMap<>();
+		long hour = toHour(System.currentTimeMillis());
+		long count = 0;
+		File [] logs = root.listFiles();
+		
+		if (logs == null) {
+			return;
+		}
+		
+		Arrays.sort(logs);
+		
+		for (File log : logs) {
+			try {
+				Long.parseLong(log.getName());
+			}
+			catch (NumberFormatException nfe) {
+				continue;
+			}
+			
+			count += replay(log, files);
+		}
+		
+		for (Map.Entry<String, RollingFile> entry : files.entrySet()) {
+			try {
+				if (entry.getValue().isCurrent(hour)) {
+					this.pending.put(entry.getKey(), entry.getValue());
+				}
+				else {
+					entry.getValue().store();
+				}
+			} catch (IOException ioe) {
+				System.out.println("RollingLog "+ entry.getKey() +" "+ ioe.getMessage());
+			}
+		}
+		
+		if (count > 0) {
+			System.out.format("Rolling log %d records replayed.\n", count);
+		}
+	}
+	
+	private long replay(File log, Map<String, RollingFile> files) throws IOException {
+		Map<Integer, RollingFile> map = new HashMap<>();
+		RollingFile rollingFile;
+		File path;
+		byte [] bytes;
+		int id;
+		long minute, value, count = 0;
+		
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(log)))) {
+			if (dis.readInt() != MAGIC || dis.readByte() != VERSION) {
+				return 0;
+			}
+			
+			while (true) {
+				switch (dis.readByte()) {
+				case PATH:
+					id = dis.readInt();
+					bytes = new byte [dis.readShort() & 0xffff];
+					
+					dis.readFully(bytes);
+					
+					path = new File(new String(bytes, StandardCharsets.UTF_8));
+					rollingFile = files.get(path.getPath());
+					
+					if (rollingFile == null && path.getParentFile().isDirectory()) {
+						files.put(path.getPath(), rollingFile = new RollingFile(path.getParentFile(), path.getName()));
+					}
+					
+					// 삭제된 node 는 null
+					map.put(id, rollingFile);
+					
+					break;
+				case VALUE:
+					id = dis.readInt();
+					minute = dis.readLong();
+					value = dis.readLong();
+					
+					rollingFile = map.get(id);
+					
+					if (rollingFile != null) {
+						rollingFile.apply(minute, value);
+						
+						count++;
+					}
+					
+					break;
+				default:
+					// 손상된 log, 여기까지만
+					return count;
+				}
+			}
+		}
+		catch (EOFException eofe) {
+			// 기록 중 중단된 마지막 entry
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * replay 에서 현재 시간의 data 를 가진 RollingFile 을 넘겨준다, 한번만
+	 * @param path
+	 * @return 없으면 null
+	 */
+	RollingFile adopt(String path) {
+		return this.pending.remove(path);
+	}
+	
+	/**
+	 * 값을 buffer 에 추가, 다음 sync 에서 기록된다
+	 * @param path RollingFile 경로
+	 * @param minute
+	 * @param value
+	 */
+	synchronized void append(String path, long minute, long value) {
+		Integer id = this.ids.get(path);
+		
+		try {
+			if (id == null) {
+				byte [] bytes = path.getBytes(StandardCharsets.UTF_8);
+				
+				this.ids.put(path, id = this.ids.size());
+				
+				this.out.writeByte(PATH);
+				this.out.writeInt(id);
+				this.out.writeShort(bytes.length);
+				this.out.write(bytes);
+			}
+			
+			this.out.writeByte(VALUE);
+			this.out.writeInt(id);
+			this.out.writeLong(minute);
+			this.out.writeLong(value);
+		} catch (IOException ioe) {
+			// ByteArrayOutputStream 은 IOException 이 발생하지 않는다
+		}
+		
+		this.appended++;
+	}
+	
+	/**
+	 * buffer 를 log 파일에 기록하고 fsync
+	 * @throws IOException
+	 */
+	private void sync() throws IOException {
+		long start = System.currentTimeMillis();
+		long hour = toHour(start);
+		ByteArrayOutputStream buffer;
+		long count;
+		
+		synchronized(this) {
+			buffer = this.buffer;
+			count = this.appended;
+			
+			this.buffer = new ByteArrayOutputStream();
+			this.out = new DataOutputStream(this.buffer);
+			
+			// 이후 append 는 새 파일로, 경로 id 를 새로 매긴다
+			if (hour != this.fileHour) {
+				this.ids.clear();
+			}
+		}
+		
+		if (buffer.size() > 0) {
+			if (this.file == null) {
+				open(hour);
+			}
+			
+			this.file.write(buffer.toByteArray());
+			this.file.getChannel().force(false);
+			
+			synchronized(this) {
+				this.syncs++;
+			}
+		}
+		
+		if (hour != this.fileHour) {
+			open(hour);
+			
+			// 지나간 log 를 지우기 전에 아무도 이어받지 않은 data 를 기록
+			store(hour);
+			
+			expire(hour);
+		}
+		
+		synchronized(this) {
+			this.synced = count;
+			this.lastSync = start;
+			this.lastDuration = System.currentTimeMillis() - start;
+		}
+	}
+	
+	/**
+	 * 새 log 파일, 이름은 생성 시각이므로 replay 한 파일을 덮어쓰지 않는다
+	 * @param hour
+	 * @throws IOException
+	 */
+	private void open(long hour) throws IOException {
+		if (this.file != null) {
+			this.file.close();
+		}
+		
+		this.fileHour = hour;
+		this.file = new RandomAccessFile(new File(this.root, Long.toString(System.currentTimeMillis())), "rw");
+		
+		this.file.setLength(0);
+		this.file.writeInt(MAGIC);
+		this.file.writeByte(VERSION);
+	}
+	
+	/**
+	 * replay 후 이어받지 않은 RollingFile 중 시간이 지난 것을 segment 에 기록한다.
+	 * node 가 응답하지 않거나 index 가 없어진 경우 roll 되지 않으므로 여기서 기록하지 않으면 log 와 함께 지워진다.
+	 * @param hour
+	 */
+	private void store(long hour) {
+		String path;
+		RollingFile rollingFile;
+		
+		for (Map.Entry<String, RollingFile> entry : this.pending.entrySet()) {
+			path = entry.getKey();
+			rollingFile = entry.getValue();
+			
+			// 그 사이 adopt 되었으면 그 RollingFile 이 기록한다
+			if (rollingFile.isCurrent(hour) || !this.pending.remove(path, rollingFile)) {
+				continue;
+			}
+			
+			try {
+				rollingFile.store();
+			} catch (IOException ioe) {
+				System.out.println("RollingLog "+ path +" "+ ioe.getMessage());
+			}
+		}
+	}
+	
+	private void expire(long hour) {
+		File [] logs = this.root.listFiles();
+		
+		if (logs == null) {
+			return;
+		}
+		
+		for (File log : logs) {
+			try {
+				if (Long.parseLong(log.getName()) < hour - RETAIN) {
+					log.delete();
+				}
+			}
+			catch (NumberFormatException nfe) {}
+		}
+	}
+	
+	@Override
+	public void run() {
+		while (!this.isClosed) {
+			try {
+				Thread.sleep(this.interval);
+			} catch (InterruptedException ie) {
+				break;
+			}
+			
+			try {
+				sync();
+			} catch (IOException ioe) {
+				System.out.println("RollingLog "+ ioe.getMessage());
+			}
+		}
+	}
+	
+	public synchronized JSONObject getStatus() {
+		return new JSONObject()
+			.put("interval", this.interval)
+			.put("appended", this.appended)
+			.put("synced", this.synced)
+			.put("syncs", this.syncs)
+			.put("lastSync", this.lastSync)
+			.put("duration", this.lastDuration)
+			.put("pending", this.pending.size());
+	}
+	
+	/**
+	 * 남은 buffer 를 기록하고 종료
+	 */
+	@Override
+	public void close() {
+		this.isClosed = true;
+		
+		this.thread.interrupt();
+		
+		try {
+			this.thread.join();
+		} catch (InterruptedException ie) {}
+		
+		try {
+			sync();
+			
+			if (this.file != null) {
+				this.file.close();
+			}
+		} catch (IOException ioe) {
+			System.out.println("RollingLog "+ ioe.getMessage());
+		}
+	}
+
+}
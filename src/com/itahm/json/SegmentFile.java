@@ -0,0 +1,316 @@
+package com.itahm.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.itahm.util.DataCleaner;
+import com.itahm.util.Util;
+
+/**
+ * RollingFile 의 하루치 data 를 담는 binary segment.
+ * index 디렉토리 아래 날짜별로 분단위 값(.dat) 과 시간별 요약(.sum) 두 파일만 둔다.
+ *
+ * header: magic(4) version(1) fields(1) base(8)
+ * record: base 로부터의 milliseconds(4) + long 값(8) * fields
+ *
+ * 고정 길이 record 를 시간순으로 뒤에 덧붙이기만 하며, 같은 시각의 record 가 여러개이면 마지막 것이 유효하다.
+ * 쓰다가 중단되어 남은 불완전한 record 는 읽을 때 무시하고 다음 append 에서 잘라낸다.
+ */
+public class SegmentFile {
+	
+	public final static String DATA = ".dat";
+	public final static String SUMMARY = ".sum";
+	// 분단위 값
+	public final static int DATA_FIELDS = 1;
+	// avg, max, min
+	public final static int SUMMARY_FIELDS = 3;
+	
+	private final static int MAGIC = 0x49544D53; // ITMS
+	private final static byte VERSION = 1;
+	private final static int HEADER = 4 + 1 + 1 + 8;
+	
+	/**
+	 * record 의 시각 순서
+	 */
+	public final static Comparator<long []> BY_TIME = new Comparator<long []>() {
+		
+		@Override
+		public int compare(long [] r1, long [] r2) {
+			return Long.compare(r1[0], r2[0]);
+		}
+		
+	};
+	
+	private static int width(int fields) {
+		return 4 + 8 * fields;
+	}
+	
+	/**
+	 *
+	 * @param root index 디렉토리
+	 * @param day 날짜 milliseconds
+	 * @param type DATA 또는 SUMMARY
+	 * @return
+	 */
+	public static File getFile(File root, long day, String type) {
+		return new File(root, Long.toString(day) + type);
+	}
+	
+	/**
+	 *
+	 * @param base 날짜 milliseconds
+	 * @param fields
+	 * @param records {시각, 값...}
+	 * @return header 를 포함한 segment
+	 */
+	private static byte [] encode(long base, int fields, List<long []> records, boolean header) {
+		ByteBuffer buffer = ByteBuffer.allocate((header? HEADER: 0) + width(fields) * records.size());
+		
+		if (header) {
+			buffer
+				.putInt(MAGIC)
+				.put(VERSION)
+				.put((byte)fields)
+				.putLong(base);
+		}
+		
+		for (long [] record : records) {
+			buffer.putInt((int)(record[0] - base));
+			
+			for (int i=1; i<=fields; i++) {
+				buffer.putLong(record[i]);
+			}
+		}
+		
+		return buffer.array();
+	}
+	
+	/**
+	 * records 를 segment 의 끝에 추가, 없으면 생성
+	 * @param file
+	 * @param base 날짜 milliseconds
+	 * @param fields
+	 * @param records {시각, 값...}
+	 * @throws IOException
+	 */
+	public static void append(File file, long base, int fields, List<long []> records) throws IOException {
+		if (records.size() == 0) {
+			return;
+		}
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long length = raf.length();
+			
+			if (length < HEADER) {
+				raf.setLength(0);
+				raf.write(encode(base, fields, records, true));
+				
+				return;
+			}
+			
+			raf.seek(0);
+			
+			if (raf.readInt() != MAGIC || raf.readByte() != VERSION || raf.readByte() != fields) {
+				throw new IOException("invalid segment "+ file.getPath());
+			}
+			
+			base = raf.readLong();
+			
+			// 불완전한 record 제거
+			length -= (length - HEADER) % width(fields);
+			
+			raf.setLength(length);
+			raf.seek(length);
+			raf.write(encode(base, fields, records, false));
+		}
+	}
+	
+	/**
+	 *
+	 * @param file
+	 * @param fields
+	 * @return {시각, 값...} 의 목록, 파일이 없으면 비어있음
+	 * @throws IOException 형식이 다른 경우
+	 */
+	public static List<long []> read(File file, int fields) throws IOException {
+		List<long []> records = new ArrayList<>();
+		
+		if (!file.isFile()) {
+			return records;
+		}
+		
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		long [] record;
+		long base;
+		
+		if (buffer.remaining() < HEADER) {
+			return records;
+		}
+		
+		if (buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.get() != fields) {
+			throw new IOException("invalid segment "+ file.getPath());
+		}
+		
+		base = buffer.getLong();
+		
+		while (buffer.remaining() >= width(fields)) {
+			record = new long [fields +1];
+			
+			record[0] = base + buffer.getInt();
+			
+			for (int i=1; i<=fields; i++) {
+				record[i] = buffer.getLong();
+			}
+			
+			records.add(record);
+		}
+		
+		return records;
+	}
+	
+	/**
+	 * 하루치 JSON 디렉토리를 segment 로 변환하고 디렉토리를 삭제한다.
+	 * 이미 segment 가 있으면 그 앞에 (더 오래된 data 로) 합친다.
+	 * @param dir index/날짜 디렉토리
+	 * @return 변환한 record 수
+	 * @throws IOException
+	 */
+	public static long migrate(File dir) throws IOException {
+		File root = dir.getParentFile();
+		long day = Long.parseLong(dir.getName());
+		List<long []> data = new ArrayList<>();
+		List<long []> summary = new ArrayList<>();
+		File [] files = dir.listFiles();
+		JSONObject json, value;
+		
+		if (files == null) {
+			return 0;
+		}
+		
+		for (File file : files) {
+			if ("summary".equals(file.getName())) {
+				json = Util.getJSONFromFile(file);
+				
+				if (json == null) {
+					continue;
+				}
+				
+				for (Object key : json.keySet()) {
+					value = json.getJSONObject((String)key);
+					
+					// 기록 중이던 시간은 avg 가 없다
+					if (!value.has("avg") || !value.has("max") || !value.has("min")) {
+						continue;
+					}
+					
+					summary.add(new long [] {Long.parseLong((String)key), value.getLong("avg"), value.getLong("max"), value.getLong("min")});
+				}
+			}
+			else {
+				try {
+					Long.parseLong(file.getName());
+				}
+				catch (NumberFormatException nfe) {
+					continue;
+				}
+				
+				json = Util.getJSONFromFile(file);
+				
+				if (json == null) {
+					continue;
+				}
+				
+				for (Object key : json.keySet()) {
+					data.add(new long [] {Long.parseLong((String)key), json.getLong((String)key)});
+				}
+			}
+		}
+		
+		merge(getFile(root, day, DATA), day, DATA_FIELDS, data);
+		merge(getFile(root, day, SUMMARY), day, SUMMARY_FIELDS, summary);
+		
+		DataCleaner.deleteDirectory(dir);
+		
+		return data.size() + summary.size();
+	}
+	
+	private static void merge(File file, long base, int fields, List<long []> records) throws IOException {
+		if (records.size() == 0) {
+			return;
+		}
+		
+		Collections.sort(records, BY_TIME);
+		
+		records.addAll(read(file, fields));
+		
+		Util.writeAtomic(file, encode(base, fields, records, true));
+	}
+	
+	/**
+	 * 기존 JSON data 를 segment 로 변환, ITAhM 이 실행중이지 않을 때 사용
+	 * @param args node 디렉토리 (data/node)
+	 * @throws IOException
+	 */
+	public static void main(String [] args) throws IOException {
+		File nodeRoot = new File(args.length > 0? args[0]: "node");
+		File [] nodes, rscs, indexes, days;
+		long count = 0, dirs = 0;
+		
+		nodes = nodeRoot.listFiles();
+		
+		if (nodes == null) {
+			System.out.println("not found "+ nodeRoot.getPath());
+			
+			return;
+		}
+		
+		for (File node : nodes) {
+			if (!node.isDirectory() || (rscs = node.listFiles()) == null) {
+				continue;
+			}
+			
+			for (File rsc : rscs) {
+				if (!rsc.isDirectory() || (indexes = rsc.listFiles()) == null) {
+					continue;
+				}
+				
+				for (File index : indexes) {
+					if (!index.isDirectory() || (days = index.listFiles()) == null) {
+						continue;
+					}
+					
+					for (File day : days) {
+						if (!day.isDirectory()) {
+							continue;
+						}
+						
+						try {
+							Long.parseLong(day.getName());
+						}
+						catch (NumberFormatException nfe) {
+							continue;
+						}
+						
+						try {
+							count += migrate(day);
+							
+							dirs++;
+						} catch (IOException ioe) {
+							System.out.println(day.getPath() +" "+ ioe.getMessage());
+						}
+					}
+				}
+			}
+		}
+		
+		System.out.format("%d directories, %d records migrated.\n", dirs, count);
+	}
+
+}
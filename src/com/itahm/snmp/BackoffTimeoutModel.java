@@ -0,0 +1,32 @@
+package com.itahm.snmp;
+
+import org.snmp4j.TimeoutModel;
+
+/**
+ * 재전송 할 때 마다 target 의 timeout 을 두배로 늘린다. 각 timeout 은 max 를 넘지 않는다.
+ */
+public class BackoffTimeoutModel implements TimeoutModel {
+	
+	private final long max;
+	
+	public BackoffTimeoutModel(long max) {
+		this.max = max;
+	}
+	
+	@Override
+	public long getRetryTimeout(int retryCount, int totalNumberOfRetries, long targetTimeout) {
+		return Math.min(this.max, targetTimeout << Math.min(retryCount, 30));
+	}
+	
+	@Override
+	public long getRequestTimeout(int totalNumberOfRetries, long targetTimeout) {
+		long timeout = 0;
+		
+		for (int i=0; i<=totalNumberOfRetries; i++) {
+			timeout += getRetryTimeout(i, totalNumberOfRetries, targetTimeout);
+		}
+		
+		return timeout;
+	}
+
+}
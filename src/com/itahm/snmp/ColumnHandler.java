@@ -0,0 +1,24 @@
+package com.itahm.snmp;
+
+import java.io.IOException;
+
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+
+/**
+ * 하나의 column (또는 scalar) 응답을 node 에 반영한다.
+ * Node.addColumn 으로 등록하며, vendor MIB 는 enterprise 번호와 함께 등록하면 해당 장비에만 요청된다.
+ */
+public interface ColumnHandler {
+	
+	/**
+	 * 
+	 * @param node
+	 * @param response 응답 OID, column 의 instance
+	 * @param variable
+	 * @return true walk 가 계속 진행되는 경우 (table column), false scalar 인 경우
+	 * @throws IOException
+	 */
+	public boolean parse(Node node, OID response, Variable variable) throws IOException;
+
+}
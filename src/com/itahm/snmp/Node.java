@@ -4,25 +4,34 @@ import java.io.Closeable;
 import java.io.IOException;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.itahm.Agent;
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
+import com.itahm.util.Admission;
+import com.itahm.util.Histogram;
+import com.itahm.util.RTTEstimator;
 
 import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
 import org.snmp4j.ScopedPDU;
 import org.snmp4j.Snmp;
 import org.snmp4j.Target;
+import org.snmp4j.TransportMapping;
 import org.snmp4j.UserTarget;
 import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
 import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.Counter32;
 import org.snmp4j.smi.Counter64;
@@ -37,7 +46,7 @@ import org.snmp4j.smi.UdpAddress;
 import org.snmp4j.smi.Variable;
 import org.snmp4j.smi.VariableBinding;
 
-public abstract class Node implements Runnable, Closeable {
+public abstract class Node implements Runnable, ResponseListener, Closeable {
 	
 	private final static int MAX_REQUEST = 100;
 	
@@ -45,550 +54,1856 @@ public abstract class Node implements Runnable, Closeable {
 	private final static int DASAN = 6296;
 	private final static int AXGATE = 37288;
 	
-	private final static int TIMEOUT_DEF = 10000;
-	private final static int [] TIMEOUTS = new int [] {2000, 3000, 5000};
-	private final static int TIMEOUT_COUNT = TIMEOUTS.length;
+	/**
+	 * 응답시간으로 정해지는 timeout 의 초기값, floor, cap (milliseconds)
+	 */
+	public final static long RTO_DEF = 3000;
+	public final static long RTO_MIN = 500;
+	public final static long RTO_MAX = 10000;
+	
+	// GET plan PDU 크기 추정치 (bytes), ethernet MTU 를 넘지 않도록
+	private final static int MAX_PDU_SIZE = 1400;
+	private final static int PDU_HEADER_SIZE = 128;
+	private final static int VB_SIZE = 16;
+	// 응답 PDU 당 varbind 수의 초기값과 상한
+	private final static int DEF_VARBINDS = 64;
+	private final static int MAX_VARBINDS = 256;
+	// 이번 주기의 가장 큰 응답이 이보다 작으면(bytes) varbind 수를 늘려본다
+	private final static int SMALL_RESPONSE = 1024;
+	// tooBig 으로 기록된 ceiling 의 유효기간, 지나면 다시 늘려본다
+	private final static long CEILING_EXPIRE = 24 * 60 * 60 * 1000L;
+	
+	/**
+	 * 한 주기의 단계, 단계마다 소요시간을 histogram 에 기록 (microseconds)
+	 */
+	public enum Phase {
+		// 계획 대비 요청 시작 지연
+		LAG("lag"),
+		// ICMP 도달 확인
+		PROBE("probe"),
+		// PDU 하나의 왕복시간
+		RTT("rtt"),
+		// 응답 parsing 과 table 교체
+		PARSE("parse"),
+		// bps, 사용률 등 계산
+		RATE("rate"),
+		CRITICAL("critical"),
+		// rolling file 과 node file 저장
+		STORE("store"),
+		// 요청 시작부터 저장까지
+		CYCLE("cycle");
+		
+		private String string;
+		
+		private Phase(String string) {
+			this.string = string;
+		}
+		
+		public String toString() {
+			return this.string;
+		}
+	}
 	
+	/**
+	 * 매 주기 요청하는 counter, 상태, 부하
+	 */
 	public PDU pdu;
-	private PDU nextPDU;
+	/**
+	 * staticTimer 주기 또는 재탐색이 필요할 때 요청하는 descriptive column 과 pdu 전체
+	 */
+	public PDU slowPDU;
 	private final Snmp snmp;
+	private final Executor executor;
 	private final InetAddress ip;
-	private final Thread thread;
+	private final RTTEstimator rtt = new RTTEstimator(RTO_DEF, RTO_MIN, RTO_MAX);
 	private Target target;
+	private TransportMapping<?> transport;
+	private Admission admission;
+	private Executor prober;
 	private Integer enterprise;
 	private long failureCount = 0;
 	private boolean isInitialized = false;
-	private final BlockingQueue<PDU> bq = new LinkedBlockingQueue<>();
+	private volatile boolean isClosed = false;
+	// 이번 주기에 ICMP 선확인을 하는지
+	private boolean isPrecheck;
+	// 이번 주기에 도달 가능성이 확인 되었는지
+	private boolean isChecked;
+	private long sent;
+	// 이번 주기가 slow tier 인지
+	private boolean isSlow;
+	// 다음 주기를 slow tier 로 강제
+	private boolean isRediscovery = true;
+	private long lastSlow = 0;
+	private long sysUpTime = -1;
+	private volatile boolean isReceived;
+	/**
+	 * fast tier 를 위한 GET PDU 목록, 재탐색(slow tier)시 다시 만들어짐
+	 */
+	private List<PDU> plan;
+	private final Set<OID> instances = new LinkedHashSet<>();
+	// 이번 주기에 plan 을 사용하는지
+	private boolean isPlanned;
+	private int planSize;
+	// iftype 설정 변경 등으로 plan 을 다시 만들어야 함
+	private volatile boolean isPlanDirty = false;
+	private int pending;
+	private boolean isFailed;
+	private IOException error;
+	/**
+	 * device 가 한 응답에 담을 수 있는 varbind 수 (학습값).
+	 * tooBig 이나 응답 없음으로 줄이고, 응답이 작으면 ceiling 전까지 늘린다.
+	 */
+	private int maxVarbinds = DEF_VARBINDS;
+	// tooBig 으로 확인된 가장 작은 크기와 그 시각
+	private int ceiling = MAX_VARBINDS +1;
+	private long ceilingTime;
+	// 주기 시작시의 학습값, 변경 여부 판단
+	private int lastVarbinds;
+	private int lastCeiling;
+	// 이번 주기의 가장 큰 응답 (bytes)
+	private int largest;
+	// 이번 주기의 가장 큰 요청 (응답 varbind 수)
+	private int largestRequest;
+	
+	private final Histogram [] phases = new Histogram [Phase.values().length];
+	// 이번 주기의 시작 (nanoseconds)
+	private long cycleStart;
+	// 이번 주기의 parsing 누적 (nanoseconds)
+	private long parseTime;
 	
 	protected long lastResponse;
 	protected long responseTime;
 	/**
-	 * 이전 데이터 보관소
+	 * scalar 데이터 보관소, table 은 getData 에서 추가된다
 	 */
 	protected final JSONObject data = new JSONObject();
 	
 	/**
-	 * 최신 데이터 보관소
+	 * ifEntry column
+	 */
+	public final static int IF_TYPE = 0;
+	public final static int IF_SPEED = 1;
+	public final static int IF_ADMIN_STATUS = 2;
+	public final static int IF_OPER_STATUS = 3;
+	public final static int IF_IN_OCTETS = 4;
+	public final static int IF_OUT_OCTETS = 5;
+	public final static int IF_IN_ERRORS = 6;
+	public final static int IF_OUT_ERRORS = 7;
+	public final static int IF_HC_IN_OCTETS = 8;
+	public final static int IF_HC_OUT_OCTETS = 9;
+	public final static int IF_HIGH_SPEED = 10;
+	public final static int IF_TIMESTAMP = 11;
+	// 이전 주기와 비교하여 계산되는 값, json 에서는 counter 대신 증가량이 ifInErrors, ifOutErrors 가 된다
+	public final static int IF_IN_BPS = 12;
+	public final static int IF_OUT_BPS = 13;
+	public final static int IF_IN_ERRORS_DIFF = 14;
+	public final static int IF_OUT_ERRORS_DIFF = 15;
+	private final static String [] IF_COLUMNS = new String [] {"ifType", "ifSpeed", "ifAdminStatus", "ifOperStatus",
+		"ifInOctets", "ifOutOctets", "ifInErrors", "ifOutErrors", "ifHCInOctets", "ifHCOutOctets", "ifHighSpeed", "timestamp",
+		"ifInBPS", "ifOutBPS", "ifInErrors", "ifOutErrors"};
+	/**
+	 * hrStorageEntry column
+	 */
+	public final static int STORAGE_TYPE = 0;
+	public final static int STORAGE_ALLOCATION_UNITS = 1;
+	public final static int STORAGE_SIZE = 2;
+	public final static int STORAGE_USED = 3;
+	private final static String [] STORAGE_COLUMNS = new String [] {"hrStorageType", "hrStorageAllocationUnits", "hrStorageSize", "hrStorageUsed"};
+	/**
+	 * hrProcessorEntry column
+	 */
+	public final static int PROCESSOR_LOAD = 0;
+	
+	/**
+	 * 마지막으로 완료된 주기의 수집값, 주기가 완료되면 수집중인 table 과 교체되므로 다른 곳에서 보관하면 안된다
+	 */
+	protected SampleTable hrProcessorEntry = new SampleTable(1);
+	protected SampleTable hrStorageEntry = new SampleTable(STORAGE_COLUMNS.length);
+	protected SampleTable ifEntry = new SampleTable(IF_COLUMNS.length);
+	/**
+	 * 그 이전 주기의 ifEntry, 변화량 계산에 사용
+	 */
+	protected SampleTable lastIFEntry = new SampleTable(IF_COLUMNS.length);
+	/**
+	 * 마지막으로 수집된 process 목록과 수집중인 목록, 보관과 전달은 변화분만
+	 */
+	private Map<String, String> hrSWRunName = new HashMap<>();
+	private Map<String, String> nextSWRunName = new HashMap<>();
+	private JSONObject processAdded = new JSONObject();
+	private JSONObject processRemoved = new JSONObject();
+	private long lastProcess = 0;
+	/**
+	 * process 수집 주기 (요청 주기 단위), 0 이면 수집하지 않고 -1 이면 전역 설정을 따름
+	 */
+	private int processInterval = -1;
+	private int processCount = 0;
+	private volatile boolean isProcessRequested = false;
+	private boolean isProcess;
+	/**
+	 * 수집중인 table
+	 */
+	private SampleTable nextProcessorEntry = new SampleTable(1);
+	private SampleTable nextStorageEntry = new SampleTable(STORAGE_COLUMNS.length);
+	private SampleTable nextIFEntry = new SampleTable(IF_COLUMNS.length);
+	
+	/**
+	 * slow tier 에서 수집된 descriptive column 보관소, fast tier 결과에 병합된다
+	 */
+	private final SampleTable ifStatic = new SampleTable(IF_COLUMNS.length);
+	private final SampleTable hrStorageStatic = new SampleTable(STORAGE_COLUMNS.length);
+	/**
+	 * 문자열 column 은 slow tier 에서만 수집되므로 json 으로 보관
 	 */
-	protected final Map<String, Integer> hrProcessorEntry = new HashMap<>();
-	protected final Map<String, JSONObject> hrStorageEntry = new HashMap<>();
-	protected final Map<String, JSONObject> ifEntry = new HashMap<>();
-	protected final Map<String, String> hrSWRunName = new HashMap<>();
+	private Map<String, JSONObject> ifText = new HashMap<>();
+	private Map<String, JSONObject> storageText = new HashMap<>();
+	private Map<String, JSONObject> nextIFText = new HashMap<>();
+	private Map<String, JSONObject> nextStorageText = new HashMap<>();
 	
-	public Node(Snmp snmp, String ip) throws IOException {
+	/**
+	 * 
+	 * @param snmp
+	 * @param executor 모든 node 가 공유하는 worker pool, 요청과 응답 처리는 여기서 이루어진다.
+	 * @param ip
+	 * @throws IOException
+	 */
+	public Node(Snmp snmp, Executor executor, String ip) throws IOException {
 		this.snmp = snmp;
+		this.executor = executor;
 		this.ip = InetAddress.getByName(ip);
 		
-		thread = new Thread(this);
-		
-		thread.setName("ITAhM SNMP Node "+ ip);
-		thread.start();
-	}
-	
-	public void close(boolean gracefully) throws IOException {
-		close();
-		
-		if (gracefully) {
-			try {
-				this.thread.join();
-			} catch (InterruptedException ie) {
-				throw new IOException (ie);
-			}
+		for (int i=0; i<this.phases.length; i++) {
+			this.phases[i] = new Histogram();
 		}
 	}
 	
 	@Override
 	public void close() throws IOException {
-		this.thread.interrupt();
-		
-		try {
-			this.bq.put(new PDU());
-		} catch (InterruptedException e) {
-		}
+		this.isClosed = true;
 	}
 	
+	/**
+	 * 한 주기의 시작. 첫 PDU 를 비동기로 전송한다. 이후 진행은 onResponse 에서 이어진다.
+	 * precheck 설정인 경우 ICMP 확인 후 전송하고,
+	 * 아닌 경우 SNMP 응답 여부로 도달 가능성을 판단하며 SNMP 실패시에만 ICMP 확인한다.
+	 * ICMP 확인은 prober 에서 이루어지므로 이 thread 는 기다리지 않는다.
+	 */
 	@Override
 	public void run() {
-		PDU pdu;
-		long sent;
+		this.isPrecheck = Agent.isPrecheck();
+		this.isChecked = false;
+		this.cycleStart = System.nanoTime();
 		
-		init: while (!this.thread.isInterrupted()) {
-			try {
-				pdu = this.bq.take();
+		if (this.isPrecheck) {
+			probe(new Runnable() {
 				
-				if (this.thread.isInterrupted()) {
-					throw new InterruptedException();
+				@Override
+				public void run() {
+					precheck();
 				}
 				
-				sent = System.currentTimeMillis();
-				
-				for (int i=0; i < TIMEOUT_COUNT; i++) {
-					if (this.thread.isInterrupted()) {
-						throw new InterruptedException();
-					}
-					
-					if (ip.isReachable(TIMEOUTS[i])) {
-						this.data.put("responseTime", this.responseTime = System.currentTimeMillis() - sent);
-						
-						onTimeout(false);
-						
-						parseResponse(this.snmp.send(pdu, this.target));
-						
-						continue init;
-					}
+			});
+		}
+		else {
+			sendRequests();
+		}
+	}
+	
+	/**
+	 * ICMP 확인 후 요청, prober 에서 실행된다.
+	 */
+	private void precheck() {
+		long sent = System.currentTimeMillis();
+		
+		try {
+			if (!isReachable()) {
+				if (!this.isClosed) {
+					onTimeout(true);
 				}
 				
-				onTimeout(true);
-				
-			} catch (InterruptedException ie) {
-				break;
-			} catch (IOException ioe) {
-				onException(ioe);
+				return;
 			}
+		} catch (IOException ioe) {
+			onException(ioe);
+			
+			return;
 		}
-	}
-	
-	public Node(Snmp snmp, String ip, int udp, OctetString user, int level) throws IOException {
-		this(snmp, ip);
 		
-		pdu = new ScopedPDU();
-		pdu.setType(PDU.GETNEXT);
+		synchronized(this) {
+			this.data.put("responseTime", this.responseTime = System.currentTimeMillis() - sent);
+		}
 		
-		nextPDU = new ScopedPDU();
-		nextPDU.setType(PDU.GETNEXT);
+		this.isChecked = true;
 		
-		// target 설정
-		target = new UserTarget();
+		onTimeout(false);
 		
-		target.setAddress(new UdpAddress(InetAddress.getByName(ip), udp));
-		target.setVersion(SnmpConstants.version3);
-		target.setSecurityLevel(level);
-		target.setSecurityName(user);
-		target.setTimeout(TIMEOUT_DEF);
+		sendRequests();
 	}
 	
-	public Node(Snmp snmp, String ip, int udp, int version, OctetString community) throws IOException {
-		this(snmp, ip);
+	/**
+	 * 이번 주기의 PDU 를 모두 전송
+	 */
+	private void sendRequests() {
+		List<PDU> requests = this.isPlanned? this.plan: split(getWalkType(), (this.isSlow? this.slowPDU: this.pdu).getVariableBindings());
 		
-		pdu = new PDU();
-		pdu.setType(PDU.GETNEXT);
+		// process 목록은 수집하는 주기에만 별도의 walk 로
+		if (this.isProcess) {
+			requests = new ArrayList<>(requests);
+			
+			requests.addAll(split(getWalkType(), Arrays.asList(new VariableBinding(RequestOID.hrSWRunName))));
+		}
 		
-		nextPDU = new PDU();
-		nextPDU.setType(PDU.GETNEXT);
+		this.sent = System.currentTimeMillis();
+		this.isReceived = false;
 		
-		target = new CommunityTarget(new UdpAddress(InetAddress.getByName(ip), udp), community);
+		synchronized(this) {
+			this.pending = requests.size();
+			this.isFailed = false;
+			this.error = null;
+			this.largest = 0;
+			this.largestRequest = 0;
+			this.lastVarbinds = this.maxVarbinds;
+			this.lastCeiling = this.ceiling;
+			this.parseTime = 0;
+		}
 		
-		target.setVersion(version);
-		target.setTimeout(TIMEOUT_DEF);
-	}
-	
-	public void setTimeout(long timeout) {
-		this.target.setTimeout(timeout);
+		for (PDU pdu : requests) {
+			send(pdu);
+		}
 	}
 	
-	private void setEnterprise(int enterprise) {
-		switch(enterprise) {
-		case CISCO:
-			this.pdu.add(new VariableBinding(RequestOID.busyPer));
-			this.pdu.add(new VariableBinding(RequestOID.cpmCPUTotal5sec));
-			this.pdu.add(new VariableBinding(RequestOID.cpmCPUTotal5secRev));
-			
-			break;
-			
-		case DASAN:
-			this.pdu.add(new VariableBinding(RequestOID.dsCpuLoad5s));
-			this.pdu.add(new VariableBinding(RequestOID.dsTotalMem));
-			this.pdu.add(new VariableBinding(RequestOID.dsUsedMem));
-			
-			break;
+	/**
+	 * prober 가 있으면 prober 에서 실행
+	 * @param task
+	 */
+	private void probe(Runnable task) {
+		if (this.prober == null) {
+			task.run();
 			
-		case AXGATE:
-			this.pdu.add(new VariableBinding(RequestOID.axgateCPU));;
-			break;
+			return;
 		}
-	}
-	
-	public void request() throws IOException {
-		// 존재하지 않는 index 지워주기 위해 초기화
-		hrProcessorEntry.clear();
-		hrStorageEntry.clear();
-		ifEntry.clear();
-		hrSWRunName.clear();
 		
-		this.pdu.setRequestID(new Integer32(0));
-		
-		this.bq.add(this.pdu);
-	}
-	
-	public long getFailureRate() {		
-		return this.failureCount;
-	}
-	
-	public void resetResponse() {
-		this.failureCount = 0;
-	}
-
-	public JSONObject getData() {
-		if (!this.isInitialized) {
-			return null;
+		try {
+			this.prober.execute(task);
+		}
+		catch (RejectedExecutionException ree) {
+			// 종료됨
 		}
-		
-		this.data.put("failure", getFailureRate());
-		
-		return this.data;
 	}
 	
-	private final boolean parseSystem(OID response, Variable variable, OID request) {
-		if (request.startsWith(RequestOID.sysDescr) && response.startsWith(RequestOID.sysDescr)) {
-			this.data.put("sysDescr", new String(((OctetString)variable).getValue()));
-		}
-		else if (request.startsWith(RequestOID.sysObjectID) && response.startsWith(RequestOID.sysObjectID)) {
-			this.data.put("sysObjectID", ((OID)variable).toDottedString());
-			
-			if (this.enterprise == null) {
-				this.enterprise = ((OID)variable).size() > 6? ((OID)variable).get(6): -1;
+	/**
+	 * SNMP 와 같은 timeout 으로 시작하여 재시도 할 때 마다 두배로
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean isReachable() throws IOException {
+		long timeout = this.rtt.getRTO();
+		long start = System.nanoTime();
+		
+		try {
+			for (int i=0, retry=Agent.getRetry(); i <= retry; i++) {
+				if (this.isClosed) {
+					return false;
+				}
 				
-				setEnterprise(this.enterprise);
+				if (ip.isReachable((int)timeout)) {
+					return true;
+				}
+				
+				timeout = Math.min(RTO_MAX, timeout *2);
 			}
+			
+			return false;
 		}
-		else if (request.startsWith(RequestOID.sysName) && response.startsWith(RequestOID.sysName)) {
-			this.data.put("sysName", new String(((OctetString)variable).getValue()));
+		finally {
+			record(Phase.PROBE, System.nanoTime() - start);
 		}
-		
-		return false;
 	}
 	
-	private final boolean parseIFEntry(OID response, Variable variable, OID request) throws IOException {
-		String index = Integer.toString(response.last());
-		JSONObject ifData = this.ifEntry.get(index);
+	/**
+	 * admission 이 있으면 허용될 때 전송, 전송된 PDU 는 onResponse 에서 release 한다.
+	 * @param pdu
+	 * @throws IOException
+	 */
+	private void send(final PDU pdu) {
+		if (this.isClosed) {
+			return;
+		}
 		
-		if(ifData == null) {
-			this.ifEntry.put(index, ifData = new JSONObject());
+		if (this.admission == null) {
+			try {
+				transmit(pdu);
+			} catch (IOException ioe) {
+				onSendFailure(ioe);
+			}
 			
-			ifData.put("ifInBPS", 0);
-			ifData.put("ifOutBPS", 0);
+			return;
 		}
 		
-		if (request.startsWith(RequestOID.ifDescr) && response.startsWith(RequestOID.ifDescr)) {
-			ifData.put("ifDescr", new String(((OctetString)variable).getValue()));
-		}
-		else if (request.startsWith(RequestOID.ifType) && response.startsWith(RequestOID.ifType)) {			
-			ifData.put("ifType", ((Integer32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifSpeed) && response.startsWith(RequestOID.ifSpeed)) {			
-			ifData.put("ifSpeed", ((Gauge32)variable).getValue());
-			ifData.put("timestamp", Calendar.getInstance().getTimeInMillis());
-		}
-		else if (request.startsWith(RequestOID.ifPhysAddress) && response.startsWith(RequestOID.ifPhysAddress)) {
-			byte [] mac = ((OctetString)variable).getValue();
-			
-			String macString = "";
-			
-			if (mac.length > 0) {
-				macString = String.format("%02X", 0L |mac[0] & 0xff);
+		this.admission.submit(this, new Runnable() {
+
+			@Override
+			public void run() {
+				if (isClosed) {
+					admission.release();
+					
+					return;
+				}
 				
-				for (int i=1; i<mac.length; i++) {
-					macString += String.format("-%02X", 0L |mac[i] & 0xff);
+				try {
+					transmit(pdu);
+				} catch (IOException ioe) {
+					admission.release();
+					
+					onSendFailure(ioe);
 				}
 			}
 			
-			ifData.put("ifPhysAddress", macString);
-		}
-		else if (request.startsWith(RequestOID.ifAdminStatus) && response.startsWith(RequestOID.ifAdminStatus)) {
-			ifData.put("ifAdminStatus", ((Integer32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifOperStatus) && response.startsWith(RequestOID.ifOperStatus)) {			
-			ifData.put("ifOperStatus", ((Integer32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifInOctets) && response.startsWith(RequestOID.ifInOctets)) {
-			ifData.put("ifInOctets", ((Counter32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifOutOctets) && response.startsWith(RequestOID.ifOutOctets)) {
-			ifData.put("ifOutOctets", ((Counter32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifInErrors) && response.startsWith(RequestOID.ifInErrors)) {
-			ifData.put("ifInErrors", ((Counter32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifOutErrors) && response.startsWith(RequestOID.ifOutErrors)) {
-			ifData.put("ifOutErrors", ((Counter32)variable).getValue());
-		}
-		else {
-			return false;
-		}
-		
-		return true;
+		});
 	}
 	
-	private final boolean parseIFXEntry(OID response, Variable variable, OID request) throws IOException {
-		String index = Integer.toString(response.last());
-		JSONObject ifData = this.ifEntry.get(index);
+	/**
+	 * 전송하지 못한 PDU 는 이번 주기의 응답 없는 PDU 로 처리한다.
+	 * 다른 PDU 가 남아 있으면 그 응답을 기다리고, 마지막이면 주기를 실패로 마무리한다.
+	 * @param ioe
+	 */
+	private void onSendFailure(IOException ioe) {
+		boolean isLast;
 		
-		if(ifData == null) {
-			this.ifEntry.put(index, ifData = new JSONObject());
-		}
+		Agent.syslog(String.format("Node %s send failed %s", this.target.getAddress(), ioe.getMessage()));
 		
-		if (request.startsWith(RequestOID.ifName) && response.startsWith(RequestOID.ifName)) {
-			ifData.put("ifName", new String(((OctetString)variable).getValue()));
-		}
-		else if (request.startsWith(RequestOID.ifAlias) && response.startsWith(RequestOID.ifAlias)) {
-			ifData.put("ifAlias", new String(((OctetString)variable).getValue()));
-		}
-		else if (request.startsWith(RequestOID.ifHCInOctets) && response.startsWith(RequestOID.ifHCInOctets)) {
-			ifData.put("ifHCInOctets", ((Counter64)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifHCOutOctets) && response.startsWith(RequestOID.ifHCOutOctets)) {
-			ifData.put("ifHCOutOctets", ((Counter64)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.ifHighSpeed) && response.startsWith(RequestOID.ifHighSpeed)) {
-			ifData.put("ifHighSpeed", ((Gauge32)variable).getValue() * 1000000L);
-		}
-		else {
-			return false;
+		synchronized(this) {
+			this.isFailed = true;
+			
+			isLast = --this.pending == 0;
 		}
 		
-		return true;
+		if (isLast) {
+			onFailure();
+		}
 	}
 	
-	private final boolean parseHost(OID response, Variable variable, OID request) throws JSONException, IOException {
-		if (request.startsWith(RequestOID.hrSystemUptime) && response.startsWith(RequestOID.hrSystemUptime)) {
-			this.data.put("hrSystemUptime", ((TimeTicks)variable).toMilliseconds());
-			
-			return false;
-		}
+	/**
+	 * 현재 RTO 로 timeout 을 설정하여 전송, 재전송은 snmp 의 TimeoutModel 에 따라 backoff 된다.
+	 * 응답시간 측정을 위해 전송 시각과 timeout 을 user handle 로 넘긴다.
+	 * 재전송은 전송에 사용한 target 의 timeout 을 다시 읽으므로 다른 PDU 가 전송중이어도 값이 바뀌지 않도록 전송마다 복사본을 사용한다.
+	 * @param pdu
+	 * @throws IOException
+	 */
+	private void transmit(PDU pdu) throws IOException {
+		long timeout = this.rtt.getRTO();
+		Target target = (Target)this.target.clone();
 		
-		String index = Integer.toString(response.last());
+		target.setTimeout(timeout);
+		target.setRetries(Agent.getRetry());
+		
+		this.snmp.send(pdu, target, this.transport, new long [] {System.nanoTime(), timeout}, this);
+	}
+	
+	@Override
+	public void onResponse(final ResponseEvent event) {
+		this.snmp.cancel(event.getRequest(), this);
 		
-		if (request.startsWith(RequestOID.hrProcessorLoad) && response.startsWith(RequestOID.hrProcessorLoad)) {
-			this.hrProcessorEntry.put(index, ((Integer32)variable).getValue());
+		if (this.admission != null) {
+			this.admission.release();
 		}
-		else if (request.startsWith(RequestOID.hrSWRunName) && response.startsWith(RequestOID.hrSWRunName)) {
-			this.hrSWRunName.put(index, new String(((OctetString)variable).getValue()));
+		
+		if (this.isClosed) {
+			return;
 		}
-		else if (request.startsWith(RequestOID.hrStorageEntry) && response.startsWith(RequestOID.hrStorageEntry)) {
-			JSONObject storageData = this.hrStorageEntry.get(index);
-			
-			if (storageData == null) {
-				this.hrStorageEntry.put(index, storageData = new JSONObject());
-			}
+		
+		if (event.getResponse() != null && event.getUserObject() instanceof long []) {
+			long [] handle = (long [])event.getUserObject();
+			long rtt = System.nanoTime() - handle[0];
 			
-			if (request.startsWith(RequestOID.hrStorageType) && response.startsWith(RequestOID.hrStorageType)) {
-				storageData.put("hrStorageType", ((OID)variable).last());
-			}
-			else if (request.startsWith(RequestOID.hrStorageDescr) && response.startsWith(RequestOID.hrStorageDescr)) {
-				storageData.put("hrStorageDescr", new String(((OctetString)variable).getValue()));
-			}
-			else if (request.startsWith(RequestOID.hrStorageAllocationUnits) && response.startsWith(RequestOID.hrStorageAllocationUnits)) {
-				storageData.put("hrStorageAllocationUnits", ((Integer32)variable).getValue());
-			}
-			else if (request.startsWith(RequestOID.hrStorageSize) && response.startsWith(RequestOID.hrStorageSize)) {
-				storageData.put("hrStorageSize", ((Integer32)variable).getValue());
-			}
-			else if (request.startsWith(RequestOID.hrStorageUsed) && response.startsWith(RequestOID.hrStorageUsed)) {
-				storageData.put("hrStorageUsed", ((Integer32)variable).getValue());
-			}
-			else {
-				return false;
+			// 재전송된 요청의 응답은 어느 전송에 대한 것인지 알 수 없으므로 제외 (Karn's algorithm)
+			if (rtt / 1000000 < handle[1]) {
+				this.rtt.sample(rtt / 1000000);
+				
+				record(Phase.RTT, rtt);
 			}
 		}
-		else {
-			return false;
-		}
-		
-		return true;
-	}
-	
-	private final boolean parseCisco(OID response, Variable variable, OID request) {
-		String index = Integer.toString(response.last());
 		
-		if (request.startsWith(RequestOID.busyPer) && response.startsWith(RequestOID.busyPer)) {
-			this.hrProcessorEntry.put(index, (int)((Gauge32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.cpmCPUTotal5sec) && response.startsWith(RequestOID.cpmCPUTotal5sec)) {
-			this.hrProcessorEntry.put(index, (int)((Gauge32)variable).getValue());
+		// SNMP 응답시간은 첫 PDU 의 왕복시간
+		if (!this.isReceived && event.getResponse() != null) {
+			this.isReceived = true;
 			
-		}
-		else if (request.startsWith(RequestOID.cpmCPUTotal5secRev) && response.startsWith(RequestOID.cpmCPUTotal5secRev)) {
-			this.hrProcessorEntry.put(index, (int)((Gauge32)variable).getValue());
-		}
-		else {
-			return false;
+			if (!this.isPrecheck) {
+				this.responseTime = System.currentTimeMillis() - this.sent;
+			}
 		}
 		
-		return true;
+		// transport 의 listen thread 를 붙잡지 않도록 parsing 은 worker pool 에서
+		this.executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					parseResponse(event);
+				} catch (IOException ioe) {
+					onException(ioe);
+				}
+			}
+			
+		});
 	}
 	
-	private final boolean parseDasan(OID response, Variable variable, OID request) {
-		String index = Integer.toString(response.last());
-		JSONObject storageData = this.hrStorageEntry.get(index);
+	public Node(Snmp snmp, Executor executor, String ip, int udp, OctetString user, int level) throws IOException {
+		this(snmp, executor, ip);
 		
-		if (storageData == null) {
-			storageData = new JSONObject();
-			
-			this.hrStorageEntry.put("0", storageData = new JSONObject());
-			
-			storageData.put("hrStorageType", 2);
-			storageData.put("hrStorageAllocationUnits", 1);
-		}
+		pdu = new ScopedPDU();
+		pdu.setType(PDU.GETNEXT);
 		
-		if (request.startsWith(RequestOID.dsCpuLoad5s) && response.startsWith(RequestOID.dsCpuLoad5s)) {
-			this.hrProcessorEntry.put(index, (int)((Integer32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.dsTotalMem) && response.startsWith(RequestOID.dsTotalMem)) {
-			storageData.put("hrStorageSize", (int)((Integer32)variable).getValue());
-		}
-		else if (request.startsWith(RequestOID.dsUsedMem) && response.startsWith(RequestOID.dsUsedMem)) {
-			storageData.put("hrStorageUsed", (int)((Integer32)variable).getValue());
-		}
-		else {
-			return false;
-		}
+		slowPDU = new ScopedPDU();
+		slowPDU.setType(PDU.GETNEXT);
+		
+		// target 설정
+		target = new UserTarget();
 		
-		return true;
+		target.setAddress(new UdpAddress(InetAddress.getByName(ip), udp));
+		target.setVersion(SnmpConstants.version3);
+		target.setSecurityLevel(level);
+		target.setSecurityName(user);
+		target.setTimeout(RTO_DEF);
 	}
 	
-	private final boolean parseAgate(OID response, Variable variable, OID request) {
-		String index = Integer.toString(response.last());
+	public Node(Snmp snmp, Executor executor, String ip, int udp, int version, OctetString community) throws IOException {
+		this(snmp, executor, ip);
 		
-		if (request.startsWith(RequestOID.axgateCPU) && response.startsWith(RequestOID.axgateCPU)) {
-			this.hrProcessorEntry.put(index,  (int)((Integer32)variable).getValue());
-		}
-		else {
-			return false;
-		}
+		pdu = new PDU();
+		pdu.setType(PDU.GETNEXT);
+		
+		slowPDU = new PDU();
+		slowPDU.setType(PDU.GETNEXT);
+		
+		target = new CommunityTarget(new UdpAddress(InetAddress.getByName(ip), udp), community);
 		
-		return true;
+		target.setVersion(version);
+		target.setTimeout(RTO_DEF);
 	}
 	
 	/**
-	 * Parse.
 	 * 
-	 * @param response
-	 * @param variable
+	 * @param transport 요청을 보낼 transport, null 이면 snmp 의 기본 transport
+	 */
+	public void setTransport(TransportMapping<?> transport) {
+		this.transport = transport;
+	}
+	
+	/**
+	 * 
+	 * @param admission 모든 node 가 공유하는 전송 허용량, null 이면 제한 없음
+	 */
+	public void setAdmission(Admission admission) {
+		this.admission = admission;
+	}
+	
+	/**
+	 * ICMP 확인은 응답이 없으면 timeout 까지 thread 를 붙잡으므로 요청과 응답을 처리하는 executor 와 분리한다.
+	 * @param prober ICMP 확인을 실행할 executor, null 이면 호출한 thread 에서
+	 */
+	public void setProber(Executor prober) {
+		this.prober = prober;
+	}
+	
+	/**
+	 * 
+	 * @param phase
+	 * @param nano 소요시간 (nanoseconds)
+	 */
+	protected void record(Phase phase, long nano) {
+		this.phases[phase.ordinal()].record(nano / 1000);
+	}
+	
+	/**
+	 * 
+	 * @return 이번 주기의 시작 (System.nanoTime)
+	 */
+	protected long getCycleStart() {
+		return this.cycleStart;
+	}
+	
+	/**
+	 * 
+	 * @return 단계별 소요시간 분포 (microseconds)
+	 */
+	public JSONObject getPhase() {
+		JSONObject phase = new JSONObject();
+		
+		for (Phase p : Phase.values()) {
+			phase.put(p.toString(), this.phases[p.ordinal()].toJSON());
+		}
+		
+		return phase;
+	}
+	
+	/**
+	 * 
+	 * @param phase
+	 * @param percentile
+	 * @return (microseconds)
+	 */
+	public long getPhase(Phase phase, double percentile) {
+		return this.phases[phase.ordinal()].getPercentile(percentile);
+	}
+	
+	public void clearPhase() {
+		for (Histogram histogram : this.phases) {
+			histogram.clear();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return srtt, rttvar, rto (milliseconds)
+	 */
+	public JSONObject getRTO() {
+		return this.rtt.toJSON();
+	}
+	
+	private void addRequestOID(OID oid) {
+		this.pdu.add(new VariableBinding(oid));
+		this.slowPDU.add(new VariableBinding(oid));
+	}
+	
+	private void setEnterprise(int enterprise) {
+		List<OID> list;
+		
+		synchronized(ENTERPRISES) {
+			list = ENTERPRISES.get(enterprise);
+		}
+		
+		if (list != null) {
+			for (OID oid : list) {
+				addRequestOID(oid);
+			}
+		}
+	}
+	
+	/**
+	 * v1 은 GETBULK 를 지원하지 않으므로 GETNEXT, v2c 와 v3 는 max-repetitions 가 설정되어 있으면 GETBULK.
+	 */
+	private int getWalkType() {
+		if (this.target.getVersion() == SnmpConstants.version1 || Agent.getMaxRepetitions() < 1) {
+			return PDU.GETNEXT;
+		}
+		
+		return PDU.GETBULK;
+	}
+	
+	/**
+	 * GETBULK 는 column 수 x max-repetitions 만큼 응답하므로 응답이 maxVarbinds 를 넘지 않도록 max-repetitions 를 정한다.
+	 * @param type
+	 * @param vbs
+	 * @return
+	 */
+	private PDU createPDU(int type, List<? extends VariableBinding> vbs) {
+		PDU pdu = this.target instanceof UserTarget? new ScopedPDU(): new PDU();
+		
+		pdu.setType(type);
+		
+		if (type == PDU.GETBULK) {
+			pdu.setNonRepeaters(0);
+			pdu.setMaxRepetitions(Math.max(1, Math.min(Agent.getMaxRepetitions(), this.maxVarbinds / Math.max(1, vbs.size()))));
+		}
+		
+		for (VariableBinding vb : vbs) {
+			pdu.add(new VariableBinding(vb.getOid()));
+		}
+		
+		return pdu;
+	}
+	
+	/**
+	 * 응답이 maxVarbinds 를 넘지 않도록 나누어 PDU 를 만든다.
+	 * @param type
+	 * @param vbs
+	 * @return
+	 */
+	private List<PDU> split(int type, List<? extends VariableBinding> vbs) {
+		List<PDU> list = new ArrayList<>();
+		int size = this.maxVarbinds;
+		
+		if (type == PDU.GETBULK) {
+			size = Math.max(1, size / Math.max(1, Math.min(Agent.getMaxRepetitions(), size)));
+		}
+		
+		for (int i=0, length=vbs.size(); i<length; i+=size) {
+			list.add(createPDU(type, vbs.subList(i, Math.min(length, i + size))));
+		}
+		
+		return list;
+	}
+	
+	/**
+	 * 
+	 * @param pdu
+	 * @return 예상되는 응답의 varbind 수
+	 */
+	private static int getResponseSize(PDU pdu) {
+		int size = pdu.getVariableBindings().size();
+		
+		return pdu.getType() == PDU.GETBULK? size * Math.max(1, pdu.getMaxRepetitions()): size;
+	}
+	
+	/**
+	 * size 크기의 응답이 실패하였으므로 maxVarbinds 를 절반 이하로 줄인다.
+	 * @param size 실패한 응답의 varbind 수
+	 * @param confirmed tooBig 으로 크기 때문임이 확실한 경우 ceiling 으로 기록
+	 */
+	private void shrink(int size, boolean confirmed) {
+		this.maxVarbinds = Math.min(this.maxVarbinds, Math.max(1, size /2));
+		
+		if (confirmed) {
+			this.ceiling = Math.min(this.ceiling, size);
+			this.ceilingTime = System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * 응답이 작았으면 ceiling 을 넘지 않는 범위에서 두배로 늘린다.
+	 */
+	private void grow() {
+		if (this.ceiling <= MAX_VARBINDS && System.currentTimeMillis() - this.ceilingTime > CEILING_EXPIRE) {
+			this.ceiling = MAX_VARBINDS +1;
+		}
+		
+		if (this.maxVarbinds < this.lastVarbinds || this.largest >= SMALL_RESPONSE) {
+			return;
+		}
+		
+		this.maxVarbinds = Math.max(this.maxVarbinds, Math.min(Math.min(MAX_VARBINDS, this.ceiling -1), this.maxVarbinds *2));
+	}
+	
+	/**
+	 * 학습값이 바뀌었으면 알린다.
+	 */
+	private void onCycleEnd() {
+		if (this.maxVarbinds != this.lastVarbinds || this.ceiling != this.lastCeiling) {
+			onResize();
+		}
+	}
+	
+	/**
+	 * 
+	 * @return maxVarbinds 와 ceiling
+	 */
+	public JSONObject getPDULimit() {
+		return new JSONObject()
+			.put("maxVarbinds", this.maxVarbinds)
+			.put("ceiling", this.ceiling)
+			.put("ceilingTime", this.ceilingTime);
+	}
+	
+	/**
+	 * 저장해 둔 학습값을 불러온다.
+	 * @param limit getPDULimit 의 결과
+	 */
+	public void setPDULimit(JSONObject limit) {
+		try {
+			this.maxVarbinds = Math.max(1, Math.min(MAX_VARBINDS, limit.getInt("maxVarbinds")));
+			this.ceiling = Math.max(2, limit.getInt("ceiling"));
+			// 시각이 없는 이전 기록도 유효기간이 지나면 풀린다
+			this.ceilingTime = limit.has("ceilingTime")? limit.getLong("ceilingTime"): System.currentTimeMillis();
+		}
+		catch (JSONException jsone) {
+		}
+	}
+	
+	public void request() throws IOException {
+		this.isSlow = this.isRediscovery || System.currentTimeMillis() - this.lastSlow >= Agent.getStaticTimer();
+		
+		// 존재하지 않는 index 지워주기 위해 초기화
+		this.nextProcessorEntry.clear();
+		this.nextStorageEntry.clear();
+		this.nextIFEntry.clear();
+		
+		int interval = this.processInterval < 0? Agent.getProcessInterval(): this.processInterval;
+		
+		this.isProcess = this.isProcessRequested || interval > 0 && ++this.processCount >= interval;
+		
+		if (this.isProcess) {
+			this.processCount = 0;
+			
+			this.nextSWRunName.clear();
+		}
+		
+		if (this.isSlow) {
+			this.nextIFText.clear();
+			this.nextStorageText.clear();
+			
+			this.instances.clear();
+		}
+		
+		this.isPlanned = !this.isSlow && this.plan != null;
+		
+		if (this.isPlanned) {
+			if (this.planSize != this.maxVarbinds || this.isPlanDirty) {
+				buildPlan();
+			}
+			
+			for (PDU get : this.plan) {
+				get.setRequestID(new Integer32(0));
+			}
+		}
+		
+		this.executor.execute(this);
+	}
+	
+	/**
+	 * slow tier 에서 수집한 descriptive column 을 보관
+	 */
+	private void saveStatic() {
+		copyStatic(this.nextIFEntry, this.ifStatic, IF_TYPE, true);
+		copyStatic(this.nextStorageEntry, this.hrStorageStatic, STORAGE_TYPE, true);
+	}
+	
+	/**
+	 * fast tier 결과에 보관된 descriptive column 을 병합.
+	 * 보관된 정보가 없는 index 가 있으면 다음 주기에 재탐색.
+	 */
+	private void loadStatic() {
+		if (!copyStatic(this.ifStatic, this.nextIFEntry, IF_TYPE, false) ||
+			!copyStatic(this.hrStorageStatic, this.nextStorageEntry, STORAGE_TYPE, false)) {
+			this.isRediscovery = true;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param from
+	 * @param to
+	 * @param column
+	 * @param create to 를 from 의 index 로 새로 만듦
+	 * @return false to 의 index 중 from 에 없는 것이 있는 경우
+	 */
+	private static boolean copyStatic(SampleTable from, SampleTable to, int column, boolean create) {
+		boolean complete = true;
+		int source;
+		
+		if (create) {
+			to.clear();
+			
+			for (int row=0, length=from.size(); row<length; row++) {
+				to.add(from.getIndex(row));
+			}
+		}
+		
+		for (int row=0, length=to.size(); row<length; row++) {
+			source = from.find(to.getIndex(row));
+			
+			if (source < 0) {
+				complete = false;
+				
+				continue;
+			}
+			
+			to.copy(row, column, from, source);
+		}
+		
+		return complete;
+	}
+	
+	public long getFailureRate() {		
+		return this.failureCount;
+	}
+	
+	public void resetResponse() {
+		this.failureCount = 0;
+	}
+
+	/**
+	 * 수집값을 json 으로 만들어 data 에 넣는다.
+	 * @return
+	 */
+	public synchronized JSONObject getData() {
+		if (!this.isInitialized) {
+			return null;
+		}
+		
+		JSONObject processorEntry = new JSONObject();
+		SampleTable table = this.hrProcessorEntry;
+		
+		for (int row=0, length=table.size(); row<length; row++) {
+			if (table.has(row, PROCESSOR_LOAD)) {
+				processorEntry.put(Integer.toString(table.getIndex(row)), table.get(row, PROCESSOR_LOAD));
+			}
+		}
+		
+		this.data.put("failure", getFailureRate());
+		this.data.put("hrProcessorEntry", processorEntry);
+		this.data.put("hrStorageEntry", toJSON(this.hrStorageEntry, STORAGE_COLUMNS, this.storageText));
+		// 이전 버전과 같이 전체 목록, 수집하지 않으면 비어있다
+		this.data.put("hrSWRunName", new JSONObject(this.hrSWRunName));
+		this.data.put("hrSWRun", new JSONObject()
+			.put("date", this.lastProcess)
+			.put("count", this.hrSWRunName.size())
+			.put("added", this.processAdded)
+			.put("removed", this.processRemoved));
+		this.data.put("ifEntry", toJSON(this.ifEntry, IF_COLUMNS, this.ifText));
+		
+		return this.data;
+	}
+	
+	private static JSONObject toJSON(SampleTable table, String [] columns, Map<String, JSONObject> text) {
+		JSONObject entry = new JSONObject(), rowData, textData;
+		String index;
+		
+		for (int row=0, length=table.size(); row<length; row++) {
+			index = Integer.toString(table.getIndex(row));
+			
+			entry.put(index, rowData = new JSONObject());
+			
+			textData = text.get(index);
+			
+			if (textData != null) {
+				for (Object key : textData.keySet()) {
+					rowData.put((String)key, textData.get((String)key));
+				}
+			}
+			
+			for (int column=0; column<columns.length; column++) {
+				if (table.has(row, column)) {
+					rowData.put(columns[column], table.get(row, column));
+				}
+			}
+		}
+		
+		return entry;
+	}
+	
+	/**
+	 * column 별 응답 처리, response OID 로 바로 찾는다.
+	 */
+	private final static OIDTrie<Column> COLUMNS = new OIDTrie<>();
+	/**
+	 * enterprise 번호별 추가로 요청할 vendor column
+	 */
+	private final static Map<Integer, List<OID>> ENTERPRISES = new HashMap<>();
+	
+	private static class Column {
+		private final OID oid;
+		private final ColumnHandler handler;
+		
+		private Column(OID oid, ColumnHandler handler) {
+			this.oid = oid;
+			this.handler = handler;
+		}
+	}
+	
+	/**
+	 * 응답 처리 등록, node 생성 전에 이루어져야 한다.
+	 * @param oid column 또는 scalar
+	 * @param handler
+	 */
+	public static void addColumn(OID oid, ColumnHandler handler) {
+		synchronized(COLUMNS) {
+			COLUMNS.put(oid, new Column(oid, handler));
+		}
+	}
+	
+	/**
+	 * vendor MIB 등록, sysObjectID 의 enterprise 번호가 일치하는 장비에 oid 를 추가로 요청한다.
+	 * @param enterprise
+	 * @param oid
+	 * @param handler
+	 */
+	public static void addColumn(int enterprise, OID oid, ColumnHandler handler) {
+		addColumn(oid, handler);
+		
+		synchronized(ENTERPRISES) {
+			List<OID> list = ENTERPRISES.get(enterprise);
+			
+			if (list == null) {
+				ENTERPRISES.put(enterprise, list = new ArrayList<>());
+			}
+			
+			list.add(oid);
+		}
+	}
+	
+	static {
+		// system
+		addColumn(RequestOID.sysDescr, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.data.put("sysDescr", new String(((OctetString)variable).getValue()));
+				
+				return false;
+			}
+		});
+		
+		addColumn(RequestOID.sysObjectID, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.data.put("sysObjectID", ((OID)variable).toDottedString());
+				
+				if (node.enterprise == null) {
+					node.enterprise = ((OID)variable).size() > 6? ((OID)variable).get(6): -1;
+					
+					node.setEnterprise(node.enterprise);
+				}
+				
+				return false;
+			}
+		});
+		
+		addColumn(RequestOID.sysName, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.data.put("sysName", new String(((OctetString)variable).getValue()));
+				
+				return false;
+			}
+		});
+		
+		addColumn(RequestOID.sysUpTime, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				long sysUpTime = ((TimeTicks)variable).toMilliseconds();
+				
+				// 재시작 되었으면 index 가 바뀌었을 수 있으므로 재탐색
+				if (sysUpTime < node.sysUpTime) {
+					node.isRediscovery = true;
+				}
+				
+				node.sysUpTime = sysUpTime;
+				
+				return false;
+			}
+		});
+		
+		// ifEntry
+		addColumn(RequestOID.ifDescr, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.getIFText(response).put("ifDescr", new String(((OctetString)variable).getValue()));
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifType, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_TYPE, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifSpeed, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_SPEED, ((Gauge32)variable).getValue());
+				node.setIF(response, IF_TIMESTAMP, System.currentTimeMillis());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifPhysAddress, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				byte [] mac = ((OctetString)variable).getValue();
+				
+				String macString = "";
+				
+				if (mac.length > 0) {
+					macString = String.format("%02X", 0L |mac[0] & 0xff);
+					
+					for (int i=1; i<mac.length; i++) {
+						macString += String.format("-%02X", 0L |mac[i] & 0xff);
+					}
+				}
+				
+				node.getIFText(response).put("ifPhysAddress", macString);
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifAdminStatus, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_ADMIN_STATUS, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifOperStatus, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_OPER_STATUS, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifInOctets, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_IN_OCTETS, ((Counter32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifOutOctets, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_OUT_OCTETS, ((Counter32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifInErrors, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_IN_ERRORS, ((Counter32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifOutErrors, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_OUT_ERRORS, ((Counter32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		// ifXEntry
+		addColumn(RequestOID.ifName, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.getIFText(response).put("ifName", new String(((OctetString)variable).getValue()));
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifAlias, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.getIFText(response).put("ifAlias", new String(((OctetString)variable).getValue()));
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifHCInOctets, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_HC_IN_OCTETS, ((Counter64)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifHCOutOctets, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_HC_OUT_OCTETS, ((Counter64)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.ifHighSpeed, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setIF(response, IF_HIGH_SPEED, ((Gauge32)variable).getValue() * 1000000L);
+				
+				return true;
+			}
+		});
+		
+		// host
+		addColumn(RequestOID.hrSystemUptime, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.data.put("hrSystemUptime", ((TimeTicks)variable).toMilliseconds());
+				
+				return false;
+			}
+		});
+		
+		addColumn(RequestOID.hrProcessorLoad, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setProcessor(response, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrSWRunName, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.nextSWRunName.put(Integer.toString(response.last()), new String(((OctetString)variable).getValue()));
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrStorageType, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setStorage(response, STORAGE_TYPE, ((OID)variable).last());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrStorageDescr, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.getStorageText(response).put("hrStorageDescr", new String(((OctetString)variable).getValue()));
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrStorageAllocationUnits, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setStorage(response, STORAGE_ALLOCATION_UNITS, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrStorageSize, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setStorage(response, STORAGE_SIZE, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(RequestOID.hrStorageUsed, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setStorage(response, STORAGE_USED, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		// cisco
+		ColumnHandler ciscoCPU = new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setProcessor(response, ((Gauge32)variable).getValue());
+				
+				return true;
+			}
+		};
+		
+		addColumn(CISCO, RequestOID.busyPer, ciscoCPU);
+		addColumn(CISCO, RequestOID.cpmCPUTotal5sec, ciscoCPU);
+		addColumn(CISCO, RequestOID.cpmCPUTotal5secRev, ciscoCPU);
+		
+		// dasan
+		addColumn(DASAN, RequestOID.dsCpuLoad5s, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.getDasanStorage(response);
+				
+				node.setProcessor(response, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(DASAN, RequestOID.dsTotalMem, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.nextStorageEntry.set(node.getDasanStorage(response), STORAGE_SIZE, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		addColumn(DASAN, RequestOID.dsUsedMem, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.nextStorageEntry.set(node.getDasanStorage(response), STORAGE_USED, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+		
+		// axgate
+		addColumn(AXGATE, RequestOID.axgateCPU, new ColumnHandler() {
+			@Override
+			public boolean parse(Node node, OID response, Variable variable) {
+				node.setProcessor(response, ((Integer32)variable).getValue());
+				
+				return true;
+			}
+		});
+	}
+	
+	private void setIF(OID response, int column, long value) {
+		SampleTable table = this.nextIFEntry;
+		
+		table.set(table.add(response.last()), column, value);
+	}
+	
+	private void setStorage(OID response, int column, long value) {
+		SampleTable table = this.nextStorageEntry;
+		
+		table.set(table.add(response.last()), column, value);
+	}
+	
+	private void setProcessor(OID response, long value) {
+		SampleTable table = this.nextProcessorEntry;
+		
+		table.set(table.add(response.last()), PROCESSOR_LOAD, value);
+	}
+	
+	/**
+	 * 마지막으로 완료된 slow 주기의 interface 이름
+	 * @param index ifIndex
+	 * @return ifName, ifDescr, 없으면 index
+	 */
+	protected synchronized String getIFName(int index) {
+		JSONObject text = this.ifText.get(Integer.toString(index));
+		
+		if (text != null) {
+			if (text.has("ifName") && text.getString("ifName").length() > 0) {
+				return text.getString("ifName");
+			}
+			
+			if (text.has("ifDescr")) {
+				return text.getString("ifDescr");
+			}
+		}
+		
+		return Integer.toString(index);
+	}
+	
+	private JSONObject getIFText(OID response) {
+		return getText(this.nextIFText, response);
+	}
+	
+	private JSONObject getStorageText(OID response) {
+		return getText(this.nextStorageText, response);
+	}
+	
+	private static JSONObject getText(Map<String, JSONObject> map, OID response) {
+		String index = Integer.toString(response.last());
+		JSONObject text = map.get(index);
+		
+		if (text == null) {
+			map.put(index, text = new JSONObject());
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * dasan 은 memory 를 index 0 의 storage 로 보관
+	 * @param response
+	 * @return row
+	 */
+	private int getDasanStorage(OID response) {
+		SampleTable table = this.nextStorageEntry;
+		int row = table.find(response.last());
+		
+		if (row < 0) {
+			row = table.add(0);
+			
+			table.set(row, STORAGE_TYPE, 2);
+			table.set(row, STORAGE_ALLOCATION_UNITS, 1);
+		}
+		
+		return row;
+	}
+	
+	/**
+	 * Parse.
+	 * 
+	 * @param response
+	 * @param variable
 	 * @param reqest
 	 * @return true get-next가 계속 진행되는 경우
 	 * @throws IOException 
 	 */
 	private final boolean parseResponse (OID response, Variable variable, OID request) throws IOException {
-		// 1,3,6,1,2,1,1,5
-		if (request.startsWith(RequestOID.system)) {
-			return parseSystem(response, variable, request);
-		}
-		// 1,3,6,1,2,1,2,2,1
-		else if (request.startsWith(RequestOID.ifEntry)) {
-			return parseIFEntry(response, variable, request);
+		Column column = COLUMNS.get(response);
+		
+		// 등록되지 않았거나 요청한 column 을 벗어남
+		if (column == null || !request.startsWith(column.oid)) {
+			return false;
 		}
-		// 1,3,6,1,2,1,31,1,1,1
-		else if (request.startsWith(RequestOID.ifXEntry)) {
-			return parseIFXEntry(response, variable, request);
+		
+		return column.handler.parse(this, response, variable);
+	}
+	
+	/**
+	 * GETNEXT 응답은 column 당 1 row, GETBULK 응답은 column 순서대로 최대 max-repetitions row 가 반복된다.
+	 * 요청한 column 을 벗어난 row 는 버리고, column 의 마지막 row 로부터 다음 요청을 이어간다.
+	 * 
+	 * @param request
+	 * @param response
+	 * @return 다음 요청, 없으면 null
+	 * @throws IOException
+	 */
+	private final PDU getNextRequest(PDU request, PDU response) throws IOException {
+		Vector<? extends VariableBinding> requestVBs = request.getVariableBindings();
+		Vector<? extends VariableBinding> responseVBs = response.getVariableBindings();
+		List<VariableBinding> nextRequests = new ArrayList<VariableBinding>();
+		VariableBinding requestVB, responseVB, lastVB;
+		Variable value;
+		int columns = requestVBs.size();
+		int length = responseVBs.size();
+		int rows = columns > 0? (length + columns -1) / columns: 0;
+		
+		column: for (int i=0; i<columns; i++) {
+			requestVB = (VariableBinding)requestVBs.get(i);
+			lastVB = null;
+			
+			for (int row=0, index=i; row<rows && index<length; row++, index+=columns) {
+				responseVB = (VariableBinding)responseVBs.get(index);
+				value = responseVB.getVariable();
+				
+				if (value == Null.endOfMibView) {
+					continue column;
+				}
+				
+				if (this.isSlow) {
+					addInstance(responseVB.getOid());
+				}
+				
+				try {
+					if (!parseResponse(responseVB.getOid(), value, requestVB.getOid())) {
+						// column 을 벗어났으므로 나머지 row 는 버린다.
+						continue column;
+					}
+				} catch(ClassCastException | JSONException e) { 
+					Agent.syslog(e.getMessage());
+					
+					continue column;
+				}
+				
+				lastVB = responseVB;
+			}
+			
+			if (lastVB != null) {
+				nextRequests.add(lastVB);
+			}
 		}
-		// 1,3,6,1,2,1,25
-		else if (request.startsWith(RequestOID.host)) {
-			return parseHost(response, variable, request);
-		}/*
-		// 1,3,6,1,2,1,4
-		else if (request.startsWith(RequestOID.ip)) {
-			return parseIP(response, variable, request);
-		}*/
-		else if (request.startsWith(RequestOID.enterprises)) {
-			if (request.startsWith(RequestOID.cisco)) {
-				return parseCisco(response, variable, request);
+		
+		return nextRequests.size() > 0? createPDU(request.getType(), nextRequests): null;
+	}
+	
+	/**
+	 * 주기의 PDU 들은 동시에 전송되므로 응답도 동시에 처리될 수 있다.
+	 * walk 는 PDU 마다 다음 요청을 이어가고, 나뉘어진 PDU 는 pending 에 더해진다.
+	 * 마지막 응답에서 주기를 마무리한다.
+	 * @param event
+	 * @throws IOException
+	 */
+	public void parseResponse(ResponseEvent event) throws IOException {
+		PDU request = event.getRequest();
+		PDU response = event.getResponse();
+		List<PDU> requests = new ArrayList<>();
+		PDU next;
+		int status;
+		boolean isLast;
+		long start = System.nanoTime();
+		
+		synchronized(this) {
+			this.largestRequest = Math.max(this.largestRequest, getResponseSize(request));
+			
+			if (response == null || event.getSource() instanceof Snmp.ReportHandler) {
+				if (response == null) {
+					this.rtt.backoff();
+				}
+				
+				// 다른 PDU 는 응답하는 중이라면 크기 때문에 버려진 것일 수 있으므로 나누어 다시 요청
+				// 단순 손실일 수도 있으므로 ceiling 으로 기록하지는 않는다
+				if (this.isReceived && response == null && getResponseSize(request) > 1) {
+					shrink(getResponseSize(request), false);
+					
+					requests.addAll(split(request.getType(), request.getVariableBindings()));
+				}
+				else {
+					this.isFailed = true;
+				}
+			}
+			else if ((status = response.getErrorStatus()) == PDU.tooBig) {
+				onReachable();
+				
+				// 더 나눌 수 없으면 포기
+				if (getResponseSize(request) > 1) {
+					shrink(getResponseSize(request), true);
+					
+					requests.addAll(split(request.getType(), request.getVariableBindings()));
+				}
 			}
-			else if (request.startsWith(RequestOID.dasan)) {
-				return parseDasan(response, variable, request);
+			else if (status != PDU.noError) {
+				onReachable();
+				
+				if (request.getType() == PDU.GET) {
+					// v1 의 noSuchName 등 plan 이 device 와 맞지 않음
+					this.isRediscovery = true;
+				}
+				else {
+					this.error = new IOException(String.format("Node %s reports error status %d", this.target.getAddress(), status));
+				}
 			}
-			else if (request.startsWith(RequestOID.axgate)) {
-				return parseAgate(response, variable, request);
+			else {
+				onReachable();
+				
+				this.largest = Math.max(this.largest, response.getBERLength());
+				
+				if (request.getType() == PDU.GET) {
+					parseGetResponse(request, response);
+				}
+				else if ((next = getNextRequest(request, response)) != null) {
+					requests.add(next);
+				}
 			}
+			
+			this.pending += requests.size() -1;
+			
+			isLast = this.pending == 0;
+			
+			this.parseTime += System.nanoTime() - start;
 		}
 		
-		return false;
+		for (PDU pdu : requests) {
+			send(pdu);
+		}
+		
+		if (isLast) {
+			if (this.isFailed) {
+				onFailure();
+			}
+			else if (this.error != null) {
+				onCycleEnd();
+				
+				throw this.error;
+			}
+			else {
+				onComplete();
+			}
+		}
 	}
 	
-	private final boolean getNextRequest(PDU request, PDU response) throws IOException {
+	private void parseGetResponse(PDU request, PDU response) throws IOException {
 		Vector<? extends VariableBinding> requestVBs = request.getVariableBindings();
 		Vector<? extends VariableBinding> responseVBs = response.getVariableBindings();
-		Vector<VariableBinding> nextRequests = new Vector<VariableBinding>();
-		VariableBinding requestVB, responseVB;
+		VariableBinding responseVB;
 		Variable value;
 		
-		for (int i=0, length = responseVBs.size(); i<length; i++) {
-			requestVB = (VariableBinding)requestVBs.get(i);
+		for (int i=0, length=Math.min(requestVBs.size(), responseVBs.size()); i<length; i++) {
 			responseVB = (VariableBinding)responseVBs.get(i);
 			value = responseVB.getVariable();
 			
-			if (value == Null.endOfMibView) {
+			// noSuchObject, noSuchInstance, endOfMibView
+			if (value instanceof Null) {
+				this.isRediscovery = true;
+				
 				continue;
 			}
 			
 			try {
-				if (parseResponse(responseVB.getOid(), value, requestVB.getOid())) {
-					nextRequests.add(responseVB);
-				}
+				parseResponse(responseVB.getOid(), value, ((VariableBinding)requestVBs.get(i)).getOid());
 			} catch(ClassCastException | JSONException e) { 
 				Agent.syslog(e.getMessage());
 			}
 		}
-		
-		this.nextPDU.clear();
-		this.nextPDU.setRequestID(new Integer32(0));
-		this.nextPDU.setVariableBindings(nextRequests);
-		
-		return nextRequests.size() > 0;
 	}
 	
-	public void parseResponse(ResponseEvent event) throws IOException {
-		PDU response = event.getResponse();
-		
-		if (response == null || event.getSource() instanceof Snmp.ReportHandler) {
-			this.failureCount = Math.min(MAX_REQUEST, this.failureCount +1);
+	/**
+	 * 이번 주기의 첫 SNMP 응답
+	 */
+	private void onReachable() {
+		if (!this.isChecked) {
+			this.isChecked = true;
 			
-			onResponse(false);
+			this.data.put("responseTime", this.responseTime);
+			
+			onTimeout(false);
+		}
+	}
+	
+	private void onFailure() {
+		// SNMP 실패시 ICMP 로 도달 가능성 확인
+		if (this.isPrecheck) {
+			onNoResponse();
 			
 			return;
 		}
 		
-		PDU request = event.getRequest();
-		int status = response.getErrorStatus();
+		probe(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					if (!isReachable()) {
+						if (!isClosed) {
+							onTimeout(true);
+						}
+						
+						return;
+					}
+				} catch (IOException ioe) {
+					onException(ioe);
+					
+					return;
+				}
+				
+				onTimeout(false);
+				
+				onNoResponse();
+			}
+			
+		});
+	}
+	
+	/**
+	 * 도달 가능하지만 SNMP 응답이 없음
+	 */
+	private void onNoResponse() {
+		// 도달 가능한데 응답이 없으면 요청 크기 때문일 수 있으므로 다음 주기는 작게
+		if (this.largestRequest > 1) {
+			shrink(this.largestRequest, false);
+		}
+		
+		onCycleEnd();
+		
+		this.failureCount = Math.min(MAX_REQUEST, this.failureCount +1);
+		
+		onResponse(false);
+	}
+	
+	private void onComplete() {
+		long start = System.nanoTime();
 		
-		if (status != PDU.noError) {
-			throw new IOException(String.format("Node %s reports error status %d", this.target.getAddress(), status));
+		synchronized(this) {
+			this.lastResponse = Calendar.getInstance().getTimeInMillis();
+			this.data.put("lastResponse", this.lastResponse);
 		}
 		
-		if (getNextRequest(request, response)) {
-			this.bq.add(this.nextPDU);
+		this.failureCount = Math.max(0, this.failureCount -1);
+		
+		this.isInitialized = true;
+		
+		grow();
+		
+		onCycleEnd();
+		
+		if (this.isSlow) {
+			saveStatic();
+			
+			buildPlan();
+			
+			this.lastSlow = System.currentTimeMillis();
+			this.isRediscovery = false;
 		}
 		else {
-			this.lastResponse = Calendar.getInstance().getTimeInMillis();
-			this.data.put("lastResponse", this.lastResponse);
+			loadStatic();
+		}
+		
+		// 원하지 않는 인터페이스 정보 삭제.
+		SampleTable table = this.nextIFEntry;
+		
+		for (int row=table.size() -1; row>=0; row--) {
+			if (!table.has(row, IF_TYPE) || !Agent.isValidIFType((int)table.get(row, IF_TYPE))) {
+				table.remove(row);
+			}
+			else {
+				table.set(row, IF_IN_BPS, 0);
+				table.set(row, IF_OUT_BPS, 0);
+			}
+		}
+		
+		// 수집이 완료된 table 로 교체, 이전 table 은 다음 주기에 재사용
+		synchronized(this) {
+			table = this.lastIFEntry;
+			this.lastIFEntry = this.ifEntry;
+			this.ifEntry = this.nextIFEntry;
+			this.nextIFEntry = table;
 			
-			this.failureCount = Math.max(0, this.failureCount -1);
+			table = this.hrProcessorEntry;
+			this.hrProcessorEntry = this.nextProcessorEntry;
+			this.nextProcessorEntry = table;
+			
+			table = this.hrStorageEntry;
+			this.hrStorageEntry = this.nextStorageEntry;
+			this.nextStorageEntry = table;
+			
+			if (this.isSlow) {
+				this.ifText = this.nextIFText;
+				this.storageText = this.nextStorageText;
+				this.nextIFText = new HashMap<>();
+				this.nextStorageText = new HashMap<>();
+			}
+			
+			if (this.isProcess) {
+				swapProcess();
+			}
+			
+			record(Phase.PARSE, this.parseTime + System.nanoTime() - start);
+		}
+		
+		onResponse(true);
+	}
+	
+	/**
+	 * slow tier walk 에서 발견된 fast tier instance 들을 GET PDU 로 묶어둔다.
+	 * 이후 fast tier 는 walk 대신 이 PDU 들을 동시에 전송한다.
+	 * maxVarbinds 가 바뀌면 다시 만든다.
+	 */
+	private void buildPlan() {
+		List<PDU> plan = new ArrayList<>();
+		PDU pdu = null;
+		int size = 0, length;
+		
+		this.isPlanDirty = false;
+		
+		for (OID oid : this.instances) {
+			if (!isValidInstance(oid)) {
+				continue;
+			}
 			
-			this.isInitialized = true;
+			length = oid.size() + VB_SIZE;
 			
-			// 원하지 않는 인터페이스 정보 삭제.
-			JSONObject jsono;
-			for (Iterator<String> it = this.ifEntry.keySet().iterator(); it.hasNext();) {
-				jsono = this.ifEntry.get(it.next());
+			if (pdu == null || size + length > MAX_PDU_SIZE || pdu.size() >= this.maxVarbinds) {
+				pdu = this.target instanceof UserTarget? new ScopedPDU(): new PDU();
 				
-				if (!jsono.has("ifType") || !Agent.isValidIFType(jsono.getInt("ifType"))) {
-					it.remove();
-				}
+				pdu.setType(PDU.GET);
+				
+				plan.add(pdu);
+				
+				size = PDU_HEADER_SIZE;
 			}
-						
-			onResponse(true);
 			
-			this.data.put("hrProcessorEntry", this.hrProcessorEntry);
-			this.data.put("hrStorageEntry", this.hrStorageEntry);
-			this.data.put("hrSWRunName", this.hrSWRunName);			
-			this.data.put("ifEntry", this.ifEntry);
+			pdu.add(new VariableBinding(oid));
+			
+			size += length;
+		}
+		
+		this.plan = plan.size() > 0? plan: null;
+		this.planSize = this.maxVarbinds;
+	}
+	
+	/**
+	 * 이전 목록과 비교하여 추가, 삭제된 process 만 남긴다. 이름이 바뀐 index 는 삭제 후 추가로 본다.
+	 */
+	private void swapProcess() {
+		Map<String, String> map = this.hrSWRunName;
+		JSONObject added = new JSONObject(), removed = new JSONObject();
+		
+		for (Map.Entry<String, String> entry : this.nextSWRunName.entrySet()) {
+			if (!entry.getValue().equals(map.get(entry.getKey()))) {
+				added.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			if (!entry.getValue().equals(this.nextSWRunName.get(entry.getKey()))) {
+				removed.put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		this.hrSWRunName = this.nextSWRunName;
+		this.nextSWRunName = map;
+		this.processAdded = added;
+		this.processRemoved = removed;
+		this.lastProcess = Calendar.getInstance().getTimeInMillis();
+		// 요청은 수집이 끝났을 때 해제, 실패한 주기이면 다음 주기에 다시
+		this.isProcessRequested = false;
+	}
+	
+	/**
+	 * 
+	 * @param interval process 수집 주기 (요청 주기 단위), 0 이면 수집하지 않고 -1 이면 전역 설정을 따름
+	 */
+	public void setProcess(int interval) {
+		this.processInterval = interval;
+	}
+	
+	/**
+	 * 다음 주기에 process 목록 수집
+	 */
+	public void requestProcess() {
+		this.isProcessRequested = true;
+	}
+	
+	/**
+	 * 
+	 * @return 전체 process 목록과 마지막 수집의 변화분
+	 */
+	public synchronized JSONObject getProcess() {
+		JSONObject process = new JSONObject();
+		
+		for (Map.Entry<String, String> entry : this.hrSWRunName.entrySet()) {
+			process.put(entry.getKey(), entry.getValue());
+		}
+		
+		return new JSONObject()
+			.put("interval", this.processInterval)
+			.put("date", this.lastProcess)
+			.put("hrSWRunName", process)
+			.put("added", this.processAdded)
+			.put("removed", this.processRemoved)
+			.put("requested", this.isProcessRequested);
+	}
+	
+	/**
+	 * ifEntry, ifXEntry 의 instance 는 slow tier 에서 수집한 ifType 이 iftype 설정에 맞는 interface 만 요청.
+	 * ifType 을 모르는 interface 는 요청하고 loadStatic 에서 재탐색 된다.
+	 * @param oid
+	 * @return
+	 */
+	private boolean isValidInstance(OID oid) {
+		if (!oid.startsWith(RequestOID.ifEntry) && !oid.startsWith(RequestOID.ifXEntry)) {
+			return true;
+		}
+		
+		int row = this.ifStatic.find(oid.last());
+		
+		return row < 0 || !this.ifStatic.has(row, IF_TYPE) || Agent.isValidIFType((int)this.ifStatic.get(row, IF_TYPE));
+	}
+	
+	/**
+	 * 다음 GET 주기 전에 plan 을 다시 만듦
+	 */
+	public void invalidatePlan() {
+		this.isPlanDirty = true;
+	}
+	
+	/**
+	 * slow tier walk 중 fast tier column 에 속하는 instance 를 기록
+	 * @param oid
+	 */
+	private void addInstance(OID oid) {
+		for (VariableBinding vb : this.pdu.getVariableBindings()) {
+			if (oid.startsWith(vb.getOid())) {
+				this.instances.add(new OID(oid));
+				
+				return;
+			}
 		}
 	}
 	
 	abstract protected void onResponse(boolean success);
 	abstract protected void onTimeout(boolean timeout);
 	abstract protected void onException(Exception e);
-	
-	public static void main(String [] args) throws IOException {
-	}
+	/**
+	 * 학습된 PDU 크기가 바뀌었을 때, getPDULimit 으로 저장
+	 */
+	abstract protected void onResize();
 	
 }
@@ -0,0 +1,102 @@
+package com.itahm.snmp;
+
+import java.util.Arrays;
+
+import org.snmp4j.smi.OID;
+
+/**
+ * OID prefix trie.
+ * 등록된 prefix 중 가장 긴 것을 OID 길이에 비례하는 시간에 찾는다. 조회시 객체를 생성하지 않는다.
+ * 등록은 조회와 동시에 이루어지지 않아야 한다.
+ * @param <T>
+ */
+public class OIDTrie<T> {
+	
+	private static class Entry {
+		private int [] keys = new int [0];
+		private Entry [] children = new Entry [0];
+		private Object value;
+		
+		private Entry get(int key) {
+			int index = Arrays.binarySearch(this.keys, key);
+			
+			return index < 0? null: this.children[index];
+		}
+		
+		private Entry add(int key) {
+			int index = Arrays.binarySearch(this.keys, key);
+			
+			if (index >= 0) {
+				return this.children[index];
+			}
+			
+			Entry entry = new Entry();
+			int length = this.keys.length;
+			int [] keys = new int [length +1];
+			Entry [] children = new Entry [length +1];
+			
+			index = -index -1;
+			
+			System.arraycopy(this.keys, 0, keys, 0, index);
+			System.arraycopy(this.children, 0, children, 0, index);
+			
+			keys[index] = key;
+			children[index] = entry;
+			
+			System.arraycopy(this.keys, index, keys, index +1, length - index);
+			System.arraycopy(this.children, index, children, index +1, length - index);
+			
+			this.keys = keys;
+			this.children = children;
+			
+			return entry;
+		}
+	}
+	
+	private final Entry root = new Entry();
+	private int size = 0;
+	
+	public void put(OID prefix, T value) {
+		Entry entry = this.root;
+		
+		for (int i=0, length=prefix.size(); i<length; i++) {
+			entry = entry.add(prefix.get(i));
+		}
+		
+		if (entry.value == null) {
+			this.size++;
+		}
+		
+		entry.value = value;
+	}
+	
+	/**
+	 * 
+	 * @param oid
+	 * @return oid 의 prefix 로 등록된 것 중 가장 긴 것의 값, 없으면 null
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(OID oid) {
+		Entry entry = this.root;
+		Object value = entry.value;
+		
+		for (int i=0, length=oid.size(); i<length; i++) {
+			entry = entry.get(oid.get(i));
+			
+			if (entry == null) {
+				break;
+			}
+			
+			if (entry.value != null) {
+				value = entry.value;
+			}
+		}
+		
+		return (T)value;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+
+}
@@ -0,0 +1,136 @@
+package com.itahm.snmp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Counter32;
+import org.snmp4j.smi.Counter64;
+import org.snmp4j.smi.Gauge32;
+import org.snmp4j.smi.Integer32;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.TimeTicks;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+/**
+ * 응답 처리 microbenchmark.
+ * fast tier 의 GET 응답을 만들어 Node.parseResponse 전체(응답 크기 확인, column 찾기, 값 처리)를 반복하고 초당 varbind 수를 출력한다.
+ * 전송은 하지 않으며 주기의 마무리(onComplete)는 포함하지 않는다.
+ */
+public class ParseBenchmark {
+	
+	private final static int VARBINDS = 64;
+	
+	private static PDU createPDU(List<VariableBinding> list) {
+		PDU pdu = new PDU();
+		
+		pdu.setType(PDU.GET);
+		
+		for (VariableBinding vb : list) {
+			pdu.add(vb);
+		}
+		
+		return pdu;
+	}
+	
+	private static void add(List<VariableBinding> requests, List<VariableBinding> responses, OID oid, Variable value) {
+		requests.add(new VariableBinding(oid));
+		responses.add(new VariableBinding(oid, value));
+	}
+	
+	/**
+	 *
+	 * @param args [interface 수] [반복 횟수]
+	 * @throws IOException
+	 */
+	public static void main(String [] args) throws IOException {
+		int interfaces = args.length > 0? Integer.parseInt(args[0]): 48;
+		int rounds = args.length > 1? Integer.parseInt(args[1]): 2000;
+		Snmp snmp = new Snmp();
+		Node node = new Node(snmp, new Executor() {
+			
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+			
+		}, "127.0.0.1", 161, SnmpConstants.version2c, new OctetString("public")) {
+			
+			@Override
+			protected void onResponse(boolean success) {
+			}
+			
+			@Override
+			protected void onTimeout(boolean timeout) {
+			}
+			
+			@Override
+			protected void onException(Exception e) {
+			}
+			
+			@Override
+			protected void onResize() {
+			}
+			
+		};
+		List<VariableBinding> requests = new ArrayList<>();
+		List<VariableBinding> responses = new ArrayList<>();
+		List<ResponseEvent> events = new ArrayList<>();
+		
+		add(requests, responses, new OID(RequestOID.sysUpTime).append(0), new TimeTicks(100));
+		
+		for (int index=1; index<=interfaces; index++) {
+			add(requests, responses, new OID(RequestOID.ifAdminStatus).append(index), new Integer32(1));
+			add(requests, responses, new OID(RequestOID.ifOperStatus).append(index), new Integer32(1));
+			add(requests, responses, new OID(RequestOID.ifInOctets).append(index), new Counter32(index * 1000L));
+			add(requests, responses, new OID(RequestOID.ifOutOctets).append(index), new Counter32(index * 1000L));
+			add(requests, responses, new OID(RequestOID.ifInErrors).append(index), new Counter32(0));
+			add(requests, responses, new OID(RequestOID.ifOutErrors).append(index), new Counter32(0));
+			add(requests, responses, new OID(RequestOID.ifHCInOctets).append(index), new Counter64(index * 1000L));
+			add(requests, responses, new OID(RequestOID.ifHCOutOctets).append(index), new Counter64(index * 1000L));
+			add(requests, responses, new OID(RequestOID.ifHighSpeed).append(index), new Gauge32(1000));
+		}
+		
+		for (int index=1; index<=4; index++) {
+			add(requests, responses, new OID(RequestOID.hrProcessorLoad).append(index), new Integer32(10));
+		}
+		
+		for (int index=1; index<=8; index++) {
+			add(requests, responses, new OID(RequestOID.hrStorageUsed).append(index), new Integer32(1000));
+		}
+		
+		for (int i=0, length=requests.size(); i<length; i+=VARBINDS) {
+			events.add(new ResponseEvent(snmp, null,
+				createPDU(requests.subList(i, Math.min(i + VARBINDS, length))),
+				createPDU(responses.subList(i, Math.min(i + VARBINDS, length))), null));
+		}
+		
+		long start, time = 0;
+		
+		for (int pass=0; pass<2; pass++) {
+			// 첫 pass 는 warm up
+			start = System.nanoTime();
+			
+			for (int round=0; round<rounds; round++) {
+				for (ResponseEvent event : events) {
+					node.parseResponse(event);
+				}
+			}
+			
+			time = System.nanoTime() - start;
+		}
+		
+		long count = 1L* rounds * requests.size();
+		
+		System.out.format("varbinds %d in %d PDU x %d rounds%n", requests.size(), events.size(), rounds);
+		System.out.format("parseResponse : %,d varbinds/s, %d ns/varbind%n", count * 1000000000L / Math.max(1, time), time / Math.max(1, count));
+	}
+
+}
@@ -20,6 +20,8 @@ public class RequestOID {
 	public final static OID 	sysDescr = new OID(new int [] {1,3,6,1,2,1,1,1});
 	// iso.org.dod.internet.mgmt.mib_2.system.sysObjectID
 	public final static OID 	sysObjectID = new OID(new int [] {1,3,6,1,2,1,1,2});
+	// iso.org.dod.internet.mgmt.mib_2.system.sysUpTime
+	public final static OID 	sysUpTime = new OID(new int [] {1,3,6,1,2,1,1,3});
 	// iso.org.dod.internet.mgmt.mib_2.system.sysServices
 	public final static OID 	sysServices = new OID(new int [] {1,3,6,1,2,1,1,7});
 	// iso.org.dod.internet.mgmt.mib_2.system.sysName
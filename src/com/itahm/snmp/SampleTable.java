@@ -0,0 +1,191 @@
+package com.itahm.snmp;
+
+import java.util.Arrays;
+
+/**
+ * SNMP table 의 한 주기 수집값.
+ * row 는 int index 로 찾고 column 값은 long 으로 보관한다.
+ * clear 후 재사용하면 배열이 커지는 경우 외에는 객체를 생성하지 않는다.
+ */
+public class SampleTable {
+	
+	private final static int CAPACITY = 16;
+	
+	private final int columns;
+	private int [] indexes = new int [CAPACITY];
+	private long [] present = new long [CAPACITY];
+	private long [] values;
+	// row +1, 0 은 빈 slot
+	private int [] slots = new int [CAPACITY *2];
+	private int size = 0;
+	private boolean isDirty = false;
+	
+	/**
+	 * 
+	 * @param columns column 수, 최대 64
+	 */
+	public SampleTable(int columns) {
+		if (columns < 1 || columns > 64) {
+			throw new IllegalArgumentException("columns "+ columns);
+		}
+		
+		this.columns = columns;
+		this.values = new long [CAPACITY * columns];
+	}
+	
+	public void clear() {
+		Arrays.fill(this.slots, 0);
+		
+		this.size = 0;
+		this.isDirty = false;
+	}
+	
+	public int size() {
+		return this.size;
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @return row 의 SNMP index
+	 */
+	public int getIndex(int row) {
+		return this.indexes[row];
+	}
+	
+	private static int hash(int index) {
+		int h = index * 0x9E3779B9;
+		
+		return h ^ (h >>> 16);
+	}
+	
+	/**
+	 * 
+	 * @param index SNMP index
+	 * @return row, 없으면 -1
+	 */
+	public int find(int index) {
+		if (this.isDirty) {
+			rehash();
+		}
+		
+		int mask = this.slots.length -1;
+		
+		for (int i = hash(index) & mask, slot; (slot = this.slots[i]) != 0; i = (i +1) & mask) {
+			if (this.indexes[slot -1] == index) {
+				return slot -1;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * @param index SNMP index
+	 * @return row, 없으면 생성
+	 */
+	public int add(int index) {
+		int row = find(index);
+		
+		if (row > -1) {
+			return row;
+		}
+		
+		if (this.size == this.indexes.length) {
+			int capacity = this.indexes.length *2;
+			
+			this.indexes = Arrays.copyOf(this.indexes, capacity);
+			this.present = Arrays.copyOf(this.present, capacity);
+			this.values = Arrays.copyOf(this.values, capacity * this.columns);
+			this.slots = new int [capacity *2];
+			
+			rehash();
+		}
+		
+		row = this.size++;
+		
+		this.indexes[row] = index;
+		this.present[row] = 0;
+		
+		insert(row);
+		
+		return row;
+	}
+	
+	private void insert(int row) {
+		int mask = this.slots.length -1;
+		int i = hash(this.indexes[row]) & mask;
+		
+		while (this.slots[i] != 0) {
+			i = (i +1) & mask;
+		}
+		
+		this.slots[i] = row +1;
+	}
+	
+	private void rehash() {
+		Arrays.fill(this.slots, 0);
+		
+		for (int row=0; row<this.size; row++) {
+			insert(row);
+		}
+		
+		this.isDirty = false;
+	}
+	
+	/**
+	 * 마지막 row 를 이 자리로 옮기므로 row 를 역순으로 순회하면서 지워야 한다.
+	 * @param row
+	 */
+	public void remove(int row) {
+		int last = --this.size;
+		
+		if (row != last) {
+			this.indexes[row] = this.indexes[last];
+			this.present[row] = this.present[last];
+			
+			System.arraycopy(this.values, last * this.columns, this.values, row * this.columns, this.columns);
+		}
+		
+		this.isDirty = true;
+	}
+	
+	public boolean has(int row, int column) {
+		return (this.present[row] & (1L << column)) != 0;
+	}
+	
+	public long get(int row, int column) {
+		return this.values[row * this.columns + column];
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @param column
+	 * @param def
+	 * @return column 값이 없으면 def
+	 */
+	public long get(int row, int column, long def) {
+		return has(row, column)? this.values[row * this.columns + column]: def;
+	}
+	
+	public void set(int row, int column, long value) {
+		this.values[row * this.columns + column] = value;
+		this.present[row] |= 1L << column;
+	}
+	
+	/**
+	 * from 의 같은 index row 에서 column 값을 복사
+	 * @param row
+	 * @param column
+	 * @param from
+	 * @param fromRow
+	 */
+	public void copy(int row, int column, SampleTable from, int fromRow) {
+		if (from.has(fromRow, column)) {
+			set(row, column, from.get(fromRow, column));
+		}
+	}
+
+}
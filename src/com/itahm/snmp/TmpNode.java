@@ -3,8 +3,10 @@ package com.itahm.snmp;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.snmp4j.CommunityTarget;
@@ -23,11 +25,17 @@ import org.snmp4j.smi.VariableBinding;
 
 abstract public class TmpNode implements ResponseListener {
 
+	// 아직 응답이 없는 profile
+	private final static int WAITING = Integer.MIN_VALUE;
+
 	protected final Snmp agent;
 	private long timeout;
-	private final LinkedList<Target> list;
+	private final List<Target> list;
 	private final Map<Target, String> profileMap;
 	private int status = -1;
+	private PDU [] requests;
+	private int [] results;
+	private boolean isDone = false;
 	protected final String ip;
 	
 	abstract public void onSuccess(String profileName);
@@ -38,7 +46,7 @@ abstract public class TmpNode implements ResponseListener {
 		this.ip = ip;
 		this.timeout = timeout;
 		
-		list = new LinkedList<>();
+		list = new ArrayList<>();
 		
 		profileMap = new HashMap<>();
 	}
@@ -71,14 +79,32 @@ abstract public class TmpNode implements ResponseListener {
 		return this;
 	}
 	
+	/**
+	 * 모든 profile 에 동시에 요청한다.
+	 * 추가된 순서가 우선순위이며, 앞선 profile 이 모두 실패한 경우에만 성공한 profile 로 onSuccess.
+	 * 결과가 정해지면 남은 요청은 취소한다. 모두 실패하면 onFailure.
+	 */
 	public void test() {
-		Target target = this.list.peek();
+		int length = this.list.size();
+		Target target;
 		PDU pdu;
 		
-		if (target == null) {
-			onFailure(status);
+		synchronized(this) {
+			this.requests = new PDU [length];
+			this.results = new int [length];
+			
+			Arrays.fill(this.results, WAITING);
 		}
-		else {
+		
+		if (length == 0) {
+			onFailure(this.status);
+			
+			return;
+		}
+		
+		for (int i=0; i<length; i++) {
+			target = this.list.get(i);
+			
 			if (target instanceof UserTarget) {
 				pdu = new ScopedPDU();
 			}
@@ -90,10 +116,14 @@ abstract public class TmpNode implements ResponseListener {
 			
 			pdu.add(new VariableBinding(new OID(new int [] {1,3,6,1,2,1})));
 			
+			synchronized(this) {
+				this.requests[i] = pdu;
+			}
+			
 			try {
-				this.agent.send(pdu, target, null, this);
+				this.agent.send(pdu, target, i, this);
 			} catch (IOException e) {
-				onFailure(-1);
+				onResult(i, -1);
 			}
 		}
 	}
@@ -102,23 +132,73 @@ abstract public class TmpNode implements ResponseListener {
 	public void onResponse(ResponseEvent event) {
 		this.agent.cancel(event.getRequest(), this);
 
-		Target target = this.list.pop();
+		int status = -1;
 		
 		if (!(event.getSource() instanceof Snmp.ReportHandler)) {
 			PDU response = event.getResponse();
 			
 			if (response != null) {
-				this.status = response.getErrorStatus();
+				status = response.getErrorStatus();
+			}
+		}
+		
+		onResult((Integer)event.getUserObject(), status);
+	}
+	
+	private void onResult(int index, int status) {
+		List<PDU> cancel = new ArrayList<>();
+		int success = -1;
+		boolean failure = true;
+		
+		synchronized(this) {
+			if (this.isDone) {
+				return;
+			}
 			
-				if (this.status == PDU.noError) {
-					onSuccess(this.profileMap.get(target));
+			this.results[index] = status;
+			
+			if (status != PDU.noError && (status != -1 || this.status == -1)) {
+				this.status = status;
+			}
+			
+			for (int i=0; i<this.results.length; i++) {
+				if (this.results[i] == WAITING) {
+					// 우선순위가 높은 profile 의 결과를 기다림
+					failure = false;
+					
+					break;
+				}
+				
+				if (this.results[i] == PDU.noError) {
+					success = i;
 					
-					return;
+					break;
+				}
+			}
+			
+			if (success < 0 && !failure) {
+				return;
+			}
+			
+			this.isDone = true;
+			
+			for (int i=0; i<this.results.length; i++) {
+				if (this.results[i] == WAITING && this.requests[i] != null) {
+					cancel.add(this.requests[i]);
 				}
 			}
 		}
 		
-		test();
+		for (PDU pdu : cancel) {
+			this.agent.cancel(pdu, this);
+		}
+		
+		if (success > -1) {
+			onSuccess(this.profileMap.get(this.list.get(success)));
+		}
+		else {
+			onFailure(this.status);
+		}
 	}
 
 }
@@ -40,6 +40,132 @@ public class Config extends Table {
 			save = true;
 		}
 		
+		try {
+			super.table.getInt("maxRepetitions");
+		}
+		catch (JSONException jsone) {
+			super.table.put("maxRepetitions", 10);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getBoolean("precheck");
+		}
+		catch (JSONException jsone) {
+			super.table.put("precheck", true);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getLong("staticTimer");
+		}
+		catch (JSONException jsone) {
+			super.table.put("staticTimer", 15 *60 *1000);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getLong("snapshotTimer");
+		}
+		catch (JSONException jsone) {
+			super.table.put("snapshotTimer", 60 *1000);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getLong("walSync");
+		}
+		catch (JSONException jsone) {
+			super.table.put("walSync", 1000);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("retry");
+		}
+		catch (JSONException jsone) {
+			super.table.put("retry", 2);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("transport");
+		}
+		catch (JSONException jsone) {
+			super.table.put("transport", Runtime.getRuntime().availableProcessors());
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("discoveryRate");
+		}
+		catch (JSONException jsone) {
+			super.table.put("discoveryRate", 200);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("maxInflight");
+		}
+		catch (JSONException jsone) {
+			super.table.put("maxInflight", 1000);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("maxPPS");
+		}
+		catch (JSONException jsone) {
+			super.table.put("maxPPS", 0);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("icmpRate");
+		}
+		catch (JSONException jsone) {
+			super.table.put("icmpRate", 200);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("flapCount");
+		}
+		catch (JSONException jsone) {
+			super.table.put("flapCount", 1);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getLong("flapHalfLife");
+		}
+		catch (JSONException jsone) {
+			super.table.put("flapHalfLife", 0);
+		
+			save = true;
+		}
+		
+		try {
+			super.table.getInt("process");
+		}
+		catch (JSONException jsone) {
+			super.table.put("process", 1);
+		
+			save = true;
+		}
+		
 		if (save) {
 			super.save();
 		}
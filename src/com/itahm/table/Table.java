@@ -41,6 +41,7 @@ public class Table {
 	
 	protected JSONObject table;
 	private File file;
+	private volatile boolean isDirty = false;
 	
 	public Table(File dataRoot, Name name) throws IOException {	
 		file = new File(dataRoot, name.toString());
@@ -87,8 +88,38 @@ public class Table {
 	}
 	
 	public JSONObject save() throws IOException {
+		this.isDirty = false;
+		
 		return Util.putJSONtoFile(this.file, this.table);
 	}
+	
+	/**
+	 * 바로 쓰지 않고 다음 flush 에서 한번에
+	 */
+	public void saveLater() {
+		this.isDirty = true;
+	}
+	
+	/**
+	 * saveLater 이후 변경이 있으면 기록
+	 * @return 기록했으면 true
+	 * @throws IOException
+	 */
+	public synchronized boolean flush() throws IOException {
+		if (!this.isDirty) {
+			return false;
+		}
+		
+		try {
+			save();
+		} catch (IOException ioe) {
+			this.isDirty = true;
+			
+			throw ioe;
+		}
+		
+		return true;
+	}
 
 	public JSONObject save(JSONObject table) throws IOException{
 		this.table = table;
@@ -0,0 +1,183 @@
+package com.itahm.util;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.itahm.json.JSONObject;
+
+/**
+ * 동시에 진행중인 요청 수와 초당 요청 수를 제한한다.
+ * 허용량 안에서는 호출 thread 에서 바로 실행하고, 넘치면 key 별 queue 에 넣어 key 사이를 돌아가며 실행한다.
+ * 한 key 가 많은 요청을 쌓아도 다른 key 가 밀리지 않는다.
+ * 실행된 요청은 완료시 반드시 release 해야 한다.
+ */
+public class Admission implements Runnable, Closeable {
+	
+	private final Map<Object, ArrayDeque<Runnable>> queues = new HashMap<>();
+	// 대기중인 요청이 있는 key, 앞에서 꺼내고 남아있으면 뒤로
+	private final ArrayDeque<Object> ring = new ArrayDeque<>();
+	private final RateLimiter limiter;
+	private final Thread thread;
+	private int maxInflight;
+	private double rate;
+	private int inflight = 0;
+	private int queued = 0;
+	private long admitted = 0;
+	private long delayed = 0;
+	private int maxQueued = 0;
+	private volatile boolean isClosed = false;
+	
+	/**
+	 *
+	 * @param name dispatcher thread 이름
+	 * @param maxInflight 0 이면 제한 없음
+	 * @param rate 초당 요청 수, 0 이면 제한 없음
+	 */
+	public Admission(String name, int maxInflight, double rate) {
+		limiter = new RateLimiter(Math.max(1, rate));
+		
+		setLimit(maxInflight, rate);
+		
+		thread = Util.newThread(this, name);
+		
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	public synchronized void setLimit(int maxInflight, double rate) {
+		this.maxInflight = Math.max(0, maxInflight);
+		this.rate = Math.max(0, rate);
+		
+		if (this.rate > 0) {
+			this.limiter.setRate(this.rate);
+		}
+		
+		notifyAll();
+	}
+	
+	private boolean hasRoom() {
+		return this.maxInflight == 0 || this.inflight < this.maxInflight;
+	}
+	
+	/**
+	 *
+	 * @param key 공정하게 나눌 단위
+	 * @param task 요청, 허용되면 실행된다
+	 */
+	public void submit(Object key, Runnable task) {
+		ArrayDeque<Runnable> queue;
+		
+		synchronized(this) {
+			// 대기중인 요청이 있으면 순서를 지키기 위해 queue 로
+			if (this.queued > 0 || !hasRoom() || this.rate > 0 && !this.limiter.tryAcquire(1)) {
+				queue = this.queues.get(key);
+				
+				if (queue == null) {
+					this.queues.put(key, queue = new ArrayDeque<>());
+					
+					this.ring.add(key);
+				}
+				
+				queue.add(task);
+				
+				this.queued++;
+				this.delayed++;
+				this.maxQueued = Math.max(this.maxQueued, this.queued);
+				
+				notifyAll();
+				
+				return;
+			}
+			
+			this.inflight++;
+			this.admitted++;
+		}
+		
+		task.run();
+	}
+	
+	/**
+	 * 요청의 완료
+	 */
+	public synchronized void release() {
+		this.inflight = Math.max(0, this.inflight -1);
+		
+		notifyAll();
+	}
+	
+	@Override
+	public void run() {
+		Runnable task;
+		Object key;
+		ArrayDeque<Runnable> queue;
+		boolean isLimited;
+		
+		while (!this.isClosed) {
+			synchronized(this) {
+				try {
+					while (!this.isClosed && (this.queued == 0 || !hasRoom())) {
+						wait();
+					}
+				} catch (InterruptedException ie) {
+					break;
+				}
+				
+				if (this.isClosed) {
+					break;
+				}
+				
+				key = this.ring.poll();
+				queue = this.queues.get(key);
+				task = queue.poll();
+				
+				if (queue.isEmpty()) {
+					this.queues.remove(key);
+				}
+				else {
+					this.ring.add(key);
+				}
+				
+				this.queued--;
+				this.inflight++;
+				this.admitted++;
+				
+				isLimited = this.rate > 0;
+			}
+			
+			try {
+				if (isLimited) {
+					this.limiter.acquire(1);
+				}
+				
+				task.run();
+			}
+			catch (InterruptedException ie) {
+				break;
+			}
+			catch (RuntimeException re) {
+				release();
+			}
+		}
+	}
+	
+	public synchronized JSONObject getStatus() {
+		return new JSONObject()
+			.put("maxInflight", this.maxInflight)
+			.put("rate", this.rate)
+			.put("inflight", this.inflight)
+			.put("queued", this.queued)
+			.put("maxQueued", this.maxQueued)
+			.put("admitted", this.admitted)
+			.put("delayed", this.delayed);
+	}
+	
+	@Override
+	public void close() {
+		this.isClosed = true;
+		
+		this.thread.interrupt();
+	}
+
+}
@@ -51,11 +51,34 @@ abstract public class DataCleaner implements Runnable{
 					}
 				}
 			}
+			else if (depth == 0 && isExpired(file.getName())) {
+				// 날짜.dat, 날짜.sum
+				if (file.delete()) {
+					count++;
+					
+					onDelete(file);
+				}
+			}
 		}
 		
 		return count;
 	}
 	
+	private boolean isExpired(String name) {
+		int index = name.indexOf('.');
+		
+		if (index < 0) {
+			return false;
+		}
+		
+		try {
+			return minDateMills > Long.parseLong(name.substring(0, index));
+		}
+		catch (NumberFormatException nfe) {
+			return false;
+		}
+	}
+	
 	public static boolean deleteDirectory(File directory) {
         if(!directory.exists() || !directory.isDirectory()) {
             return false;
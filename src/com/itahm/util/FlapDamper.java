@@ -0,0 +1,87 @@
+package com.itahm.util;
+
+/**
+ * 도달 가능 상태의 변화를 걸러낸다.
+ * 반대 상태가 count 번 연속되어야 변화로 인정하고,
+ * 변화마다 penalty 를 더해 halfLife 주기로 반감시키며 penalty 가 SUPPRESS 를 넘으면 REUSE 아래로 내려갈 때까지 복구를 알리지 않는다 (RFC 2439).
+ * 장애(up -> down)는 억제하지 않는다. 억제가 풀렸을 때 복구되어 있으면 그때 한번 알린다.
+ */
+public class FlapDamper {
+	
+	private final static double PENALTY = 1000;
+	private final static double SUPPRESS = 2000;
+	private final static double REUSE = 750;
+	
+	// 마지막으로 알린 상태
+	private boolean isDown;
+	private int pending = 0;
+	private double penalty = 0;
+	private long lastDecay = System.currentTimeMillis();
+	private boolean isSuppressed = false;
+	
+	public FlapDamper(boolean isDown) {
+		this.isDown = isDown;
+	}
+	
+	/**
+	 *
+	 * @param isDown 이번 확인 결과
+	 * @param count 변화로 인정하기 위한 연속 횟수
+	 * @param halfLife penalty 반감 주기 milliseconds, 0 이면 억제하지 않음
+	 * @return 알려야 할 상태 변화이면 true
+	 */
+	public synchronized boolean update(boolean isDown, int count, long halfLife) {
+		decay(halfLife);
+		
+		if (isDown == this.isDown) {
+			this.pending = 0;
+			
+			return false;
+		}
+		
+		if (++this.pending < Math.max(1, count)) {
+			return false;
+		}
+		
+		if (halfLife > 0) {
+			// 장애는 억제중에도 알린다
+			if (this.isSuppressed && !isDown) {
+				return false;
+			}
+			
+			this.penalty += PENALTY;
+			
+			if (this.penalty > SUPPRESS) {
+				this.isSuppressed = true;
+			}
+		}
+		
+		this.isDown = isDown;
+		this.pending = 0;
+		
+		return true;
+	}
+	
+	private void decay(long halfLife) {
+		long now = System.currentTimeMillis();
+		
+		if (halfLife > 0 && this.penalty > 0) {
+			this.penalty *= Math.pow(.5, (double)(now - this.lastDecay) / halfLife);
+			
+			if (this.penalty < REUSE) {
+				this.isSuppressed = false;
+			}
+		}
+		else {
+			this.penalty = 0;
+			this.isSuppressed = false;
+		}
+		
+		this.lastDecay = now;
+	}
+	
+	public synchronized boolean isSuppressed() {
+		return this.isSuppressed;
+	}
+
+}
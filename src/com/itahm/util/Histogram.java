@@ -0,0 +1,113 @@
+package com.itahm.util;
+
+import com.itahm.json.JSONObject;
+
+/**
+ * HDR histogram 과 같은 log-linear bucket.
+ * 2의 거듭제곱 구간마다 SUB/2 개의 bucket 으로 나누므로 상대 오차는 2/SUB (약 6%) 이하이며
+ * 기록은 O(1), 메모리는 값의 범위와 무관하게 고정된다.
+ * 단위는 호출하는 쪽에서 정한다 (SNMP 주기 측정은 microseconds).
+ */
+public class Histogram {
+	
+	private final static int SUB_BITS = 5;
+	private final static int SUB = 1 << SUB_BITS;
+	private final static int HALF = SUB >> 1;
+	// 이보다 큰 값은 가장 큰 bucket 에 (microseconds 로 약 1시간)
+	private final static long MAX_VALUE = (1L << 32) -1;
+	private final static int LENGTH = index(MAX_VALUE) +1;
+	
+	private final int [] counts = new int [LENGTH];
+	private long count = 0;
+	private long sum = 0;
+	private long min = Long.MAX_VALUE;
+	private long max = 0;
+	
+	private static int index(long value) {
+		if (value < SUB) {
+			return (int)value;
+		}
+		
+		int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		
+		return SUB + (shift -1) * HALF + (int)(value >>> shift) - HALF;
+	}
+	
+	/**
+	 *
+	 * @param index
+	 * @return bucket 에 속하는 가장 큰 값
+	 */
+	private static long upper(int index) {
+		if (index < SUB) {
+			return index;
+		}
+		
+		int shift = (index - SUB) / HALF +1;
+		long mantissa = (index - SUB) % HALF + HALF;
+		
+		return ((mantissa +1) << shift) -1;
+	}
+	
+	public synchronized void record(long value) {
+		value = Math.max(0, Math.min(MAX_VALUE, value));
+		
+		this.counts[index(value)]++;
+		this.count++;
+		this.sum += value;
+		this.min = Math.min(this.min, value);
+		this.max = Math.max(this.max, value);
+	}
+	
+	public synchronized long getCount() {
+		return this.count;
+	}
+	
+	/**
+	 *
+	 * @param percentile 0 ~ 100
+	 * @return 해당 백분위를 포함하는 bucket 의 상한, max 를 넘지 않음
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (this.count == 0) {
+			return 0;
+		}
+		
+		long rank = Math.max(1, (long)Math.ceil(this.count * percentile / 100));
+		long seen = 0;
+		
+		for (int i=0; i<LENGTH; i++) {
+			seen += this.counts[i];
+			
+			if (seen >= rank) {
+				return Math.min(this.max, upper(i));
+			}
+		}
+		
+		return this.max;
+	}
+	
+	public synchronized void clear() {
+		for (int i=0; i<LENGTH; i++) {
+			this.counts[i] = 0;
+		}
+		
+		this.count = 0;
+		this.sum = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = 0;
+	}
+	
+	public synchronized JSONObject toJSON() {
+		return new JSONObject()
+			.put("count", this.count)
+			.put("min", this.count > 0? this.min: 0)
+			.put("mean", this.count > 0? this.sum / this.count: 0)
+			.put("max", this.max)
+			.put("p50", getPercentile(50))
+			.put("p90", getPercentile(90))
+			.put("p99", getPercentile(99))
+			.put("p999", getPercentile(99.9));
+	}
+
+}
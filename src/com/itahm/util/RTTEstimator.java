@@ -0,0 +1,72 @@
+package com.itahm.util;
+
+import com.itahm.json.JSONObject;
+
+/**
+ * TCP 의 retransmission timeout 계산 (RFC 6298).
+ * 응답시간의 평균(srtt)과 편차(rttvar)로 timeout 을 정하고 floor 와 cap 사이로 제한한다.
+ */
+public class RTTEstimator {
+	
+	// clock granularity
+	private final static long G = 10;
+	
+	private final long min;
+	private final long max;
+	private long srtt = -1;
+	private long rttvar = 0;
+	private long rto;
+	
+	/**
+	 * 
+	 * @param initial 응답시간을 측정하기 전의 timeout (milliseconds)
+	 * @param min floor
+	 * @param max cap
+	 */
+	public RTTEstimator(long initial, long min, long max) {
+		this.min = min;
+		this.max = max;
+		
+		this.rto = limit(initial);
+	}
+	
+	private long limit(long rto) {
+		return Math.max(this.min, Math.min(this.max, rto));
+	}
+	
+	/**
+	 * 재전송 없이 받은 응답의 왕복시간
+	 * @param rtt
+	 */
+	public synchronized void sample(long rtt) {
+		if (this.srtt < 0) {
+			this.srtt = rtt;
+			this.rttvar = rtt /2;
+		}
+		else {
+			this.rttvar = (3 *this.rttvar + Math.abs(this.srtt - rtt)) /4;
+			this.srtt = (7 *this.srtt + rtt) /8;
+		}
+		
+		this.rto = limit(this.srtt + Math.max(G, 4 *this.rttvar));
+	}
+	
+	/**
+	 * 응답이 없었으므로 다음 응답을 받을 때 까지 timeout 을 두배로
+	 */
+	public synchronized void backoff() {
+		this.rto = limit(this.rto *2);
+	}
+	
+	public synchronized long getRTO() {
+		return this.rto;
+	}
+	
+	public synchronized JSONObject toJSON() {
+		return new JSONObject()
+			.put("srtt", this.srtt)
+			.put("rttvar", this.rttvar)
+			.put("rto", this.rto);
+	}
+
+}
@@ -0,0 +1,69 @@
+package com.itahm.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 초당 허용량을 넘지 않도록 호출 thread 를 기다리게 한다.
+ * 허용량은 미리 예약되므로 동시에 호출되어도 간격이 유지되며, 쉬었던 시간만큼 몰아서 허용하지 않는다.
+ */
+public class RateLimiter {
+	
+	private long interval;
+	private long next = System.nanoTime();
+	
+	/**
+	 * 
+	 * @param rate 초당 허용량
+	 */
+	public RateLimiter(double rate) {
+		setRate(rate);
+	}
+	
+	public synchronized void setRate(double rate) {
+		this.interval = (long)(TimeUnit.SECONDS.toNanos(1) / Math.max(rate, 0.001));
+	}
+	
+	/**
+	 * 
+	 * @param permits
+	 * @return 예약된 시각까지 남은 시간 (nanoseconds)
+	 */
+	private synchronized long reserve(int permits) {
+		long now = System.nanoTime();
+		long wait;
+		
+		this.next = Math.max(this.next, now);
+		
+		wait = this.next - now;
+		
+		this.next += permits * this.interval;
+		
+		return wait;
+	}
+	
+	public void acquire(int permits) throws InterruptedException {
+		long wait = reserve(permits);
+		
+		if (wait > 0) {
+			TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param permits
+	 * @return false 지금 허용량이 없는 경우, 예약하지 않는다
+	 */
+	public synchronized boolean tryAcquire(int permits) {
+		long now = System.nanoTime();
+		
+		if (this.next > now) {
+			return false;
+		}
+		
+		this.next = now + permits * this.interval;
+		
+		return true;
+	}
+
+}
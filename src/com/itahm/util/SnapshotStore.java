@@ -0,0 +1,113 @@
+package com.itahm.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.itahm.json.JSONObject;
+
+/**
+ * write-behind snapshot 저장소.
+ * 변경은 dirty 표시만 하고 flush 에서 한번에 기록한다.
+ * 여러번 표시되어도 flush 주기마다 한번만 쓰며, 기록은 임시 파일에 쓴 후 rename 한다.
+ */
+abstract public class SnapshotStore implements Closeable {
+	
+	private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+	private long written = 0;
+	private long failed = 0;
+	private long flushes = 0;
+	private long lastFlush = 0;
+	private long lastDuration = 0;
+	
+	/**
+	 *
+	 * @param key
+	 * @return snapshot 을 기록할 파일
+	 */
+	abstract protected File getFile(String key);
+	
+	/**
+	 *
+	 * @param key
+	 * @return 기록할 내용, null 이면 기록하지 않음. 기록하는 동안에도 수정되는 json 이면 수정하는 쪽과 같은 lock 안에서 문자열로 만들어야 한다
+	 */
+	abstract protected String getSnapshot(String key);
+	
+	public void mark(String key) {
+		this.dirty.add(key);
+	}
+	
+	/**
+	 * 더 이상 기록하지 않음
+	 * @param key
+	 */
+	public void remove(String key) {
+		this.dirty.remove(key);
+	}
+	
+	/**
+	 * dirty 표시된 snapshot 을 모두 기록
+	 * @return 실제로 기록한 수
+	 */
+	public synchronized int flush() {
+		List<String> keys = new ArrayList<>(this.dirty);
+		long start = System.currentTimeMillis();
+		String snapshot;
+		int count = 0;
+		
+		for (String key : keys) {
+			// 기록하는 동안 다시 표시되면 다음 flush 에서
+			this.dirty.remove(key);
+			
+			snapshot = getSnapshot(key);
+			
+			if (snapshot == null) {
+				continue;
+			}
+			
+			try {
+				Util.writeAtomic(getFile(key), snapshot.getBytes(StandardCharsets.UTF_8));
+				
+				this.written++;
+				
+				count++;
+			} catch (IOException ioe) {
+				this.failed++;
+				
+				// 다음 flush 에서 다시
+				this.dirty.add(key);
+			}
+		}
+		
+		this.flushes++;
+		this.lastFlush = start;
+		this.lastDuration = System.currentTimeMillis() - start;
+		
+		return count;
+	}
+	
+	public synchronized JSONObject getStatus() {
+		return new JSONObject()
+			.put("dirty", this.dirty.size())
+			.put("written", this.written)
+			.put("failed", this.failed)
+			.put("flushes", this.flushes)
+			.put("lastFlush", this.lastFlush)
+			.put("duration", this.lastDuration);
+	}
+	
+	/**
+	 * 남은 snapshot 을 모두 기록
+	 */
+	@Override
+	public void close() {
+		flush();
+	}
+
+}
@@ -6,18 +6,111 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.itahm.json.JSONException;
 import com.itahm.json.JSONObject;
 
 public class Util {
 
+	// -virtual 로 시작하면 worker 들을 virtual thread 로 생성
+	private static boolean isVirtual = false;
+	
+	/**
+	 * virtual thread 사용 여부 설정. 
+	 * @param virtual
+	 * @return false 이면 virtual thread 를 지원하지 않는 jvm 이어서 platform thread 를 사용
+	 */
+	public static boolean setVirtualThread(boolean virtual) {
+		if (virtual) {
+			try {
+				Thread.class.getMethod("ofVirtual");
+			} catch (NoSuchMethodException nsme) {
+				virtual = false;
+			}
+		}
+		
+		isVirtual = virtual;
+		
+		return isVirtual;
+	}
+	
+	public static boolean isVirtualThread() {
+		return isVirtual;
+	}
+	
+	/**
+	 * 시작되지 않은 thread 를 생성. virtual thread 설정된 경우 virtual thread.
+	 * jdk 21 이전에서도 compile 가능하도록 reflection 으로 접근함.
+	 * @param r
+	 * @param name
+	 * @return
+	 */
+	public static Thread newThread(Runnable r, String name) {
+		if (isVirtual) {
+			try {
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+				Object virtual = Thread.class.getMethod("ofVirtual").invoke(null);
+				
+				virtual = builder.getMethod("name", String.class).invoke(virtual, name);
+				
+				return (Thread)builder.getMethod("unstarted", Runnable.class).invoke(virtual, r);
+			} catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+				isVirtual = false;
+			}
+		}
+		
+		Thread thread = new Thread(r);
+		
+		thread.setName(name);
+		
+		return thread;
+	}
+	
+	/**
+	 * worker pool 생성. virtual thread 설정된 경우 task 마다 virtual thread, 아니면 size 크기의 고정 pool.
+	 * @param size
+	 * @param name
+	 * @return
+	 */
+	public static ExecutorService newExecutor(int size, final String name) {
+		ThreadFactory factory = new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = Util.newThread(r, name +" "+ count.incrementAndGet());
+				
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		};
+		
+		if (isVirtual) {
+			try {
+				return (ExecutorService)Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+				isVirtual = false;
+			}
+		}
+		
+		return Executors.newFixedThreadPool(size, factory);
+	}
+	
+
 	public static void download(URL url, File file) throws IOException {
 		try (BufferedInputStream bi = new BufferedInputStream(url.openStream());
 			FileOutputStream fos = new FileOutputStream(file);
@@ -102,4 +195,25 @@ public class Util {
 		return json;
 	}
 	
+	/**
+	 * 같은 directory 의 임시 파일에 쓴 후 rename, 읽는 쪽은 이전 내용이나 새 내용만 보게 된다.
+	 * @param file
+	 * @param bytes
+	 * @throws IOException
+	 */
+	public static void writeAtomic(File file, byte [] bytes) throws IOException {
+		File tmp = new File(file.getParentFile(), file.getName() +".tmp");
+		
+		try (FileOutputStream fos = new FileOutputStream(tmp)) {
+			fos.write(bytes);
+		}
+		
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (AtomicMoveNotSupportedException amnse) {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
 }
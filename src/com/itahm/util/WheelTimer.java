@@ -0,0 +1,220 @@
+package com.itahm.util;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+import com.itahm.json.JSONObject;
+
+/**
+ * Hashed wheel timer.
+ * 등록과 만료 처리 모두 O(1), 만료된 task 는 executor 에서 실행되므로 느린 task 가 다른 task 를 지연시키지 않는다.
+ * task 는 재사용 가능하며 대기중인 task 는 중복 등록되지 않는다.
+ */
+public class WheelTimer implements Runnable, Closeable {
+	
+	abstract public static class Task implements Runnable {
+		private WheelTimer timer;
+		private Task next;
+		private long deadline;
+		private long rounds;
+		private boolean pending = false;
+		private volatile long lag = 0;
+		
+		abstract protected void execute();
+		
+		@Override
+		public final void run() {
+			this.lag = Math.max(0, System.currentTimeMillis() - this.deadline);
+			
+			this.timer.onExecute(this.lag);
+			
+			execute();
+		}
+		
+		/**
+		 * @return 마지막 실행의 계획 시각 대비 실제 실행 시각 차이 (milliseconds)
+		 */
+		public long getLag() {
+			return this.lag;
+		}
+	}
+	
+	private final long tick;
+	private final Task [] wheel;
+	private final int mask;
+	private final Executor executor;
+	private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+	private final Thread thread;
+	private long start;
+	private long ticks = 0;
+	private volatile boolean isClosed = false;
+	
+	private long lagCount = 0;
+	private long lagSum = 0;
+	private long lagMax = 0;
+	
+	/**
+	 *
+	 * @param name thread 이름
+	 * @param tick 해상도 (milliseconds)
+	 * @param size wheel 크기, 2의 거듭제곱으로 올림
+	 * @param executor 만료된 task 를 실행할 executor
+	 */
+	public WheelTimer(String name, long tick, int size, Executor executor) {
+		int length = 1;
+		
+		while (length < size) {
+			length <<= 1;
+		}
+		
+		this.tick = tick;
+		this.wheel = new Task [length];
+		this.mask = length -1;
+		this.executor = executor;
+		
+		this.start = System.currentTimeMillis();
+		
+		thread = new Thread(this);
+		
+		thread.setName(name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 *
+	 * @param task
+	 * @param delay
+	 * @return false 이미 대기중인 task 이거나 timer 가 종료된 경우
+	 */
+	public boolean schedule(Task task, long delay) {
+		if (this.isClosed) {
+			return false;
+		}
+		
+		synchronized(task) {
+			if (task.pending) {
+				return false;
+			}
+			
+			task.pending = true;
+			task.timer = this;
+			task.deadline = System.currentTimeMillis() + Math.max(0, delay);
+		}
+		
+		this.queue.offer(task);
+		
+		return true;
+	}
+	
+	@Override
+	public void run() {
+		long deadline, sleep;
+		
+		while (!this.isClosed) {
+			deadline = this.start + (this.ticks +1) * this.tick;
+			sleep = deadline - System.currentTimeMillis();
+			
+			if (sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch (InterruptedException ie) {
+					break;
+				}
+			}
+			
+			transfer();
+			
+			expire((int)(this.ticks & this.mask));
+			
+			this.ticks++;
+		}
+	}
+	
+	private void transfer() {
+		Task task;
+		long calculated;
+		int index;
+		
+		while ((task = this.queue.poll()) != null) {
+			calculated = (task.deadline - this.start) / this.tick;
+			
+			task.rounds = Math.max(0, (calculated - this.ticks) / this.wheel.length);
+			
+			index = (int)(Math.max(calculated, this.ticks) & this.mask);
+			
+			task.next = this.wheel[index];
+			this.wheel[index] = task;
+		}
+	}
+	
+	private void expire(int index) {
+		Task task = this.wheel[index], prev = null, next;
+		
+		while (task != null) {
+			next = task.next;
+			
+			if (task.rounds > 0) {
+				task.rounds--;
+				
+				prev = task;
+			}
+			else {
+				if (prev == null) {
+					this.wheel[index] = next;
+				}
+				else {
+					prev.next = next;
+				}
+				
+				task.next = null;
+				
+				synchronized(task) {
+					task.pending = false;
+				}
+				
+				try {
+					this.executor.execute(task);
+				}
+				catch (RuntimeException re) {
+					// executor 가 종료된 경우
+				}
+			}
+			
+			task = next;
+		}
+	}
+	
+	private synchronized void onExecute(long lag) {
+		this.lagCount++;
+		this.lagSum += lag;
+		this.lagMax = Math.max(this.lagMax, lag);
+	}
+	
+	/**
+	 * 마지막 호출 이후의 scheduling lag 통계, 호출시 초기화 된다.
+	 * @return count, avg, max (milliseconds)
+	 */
+	public synchronized JSONObject getLag() {
+		JSONObject lag = new JSONObject()
+			.put("count", this.lagCount)
+			.put("avg", this.lagCount > 0? this.lagSum / this.lagCount: 0)
+			.put("max", this.lagMax);
+		
+		this.lagCount = 0;
+		this.lagSum = 0;
+		this.lagMax = 0;
+		
+		return lag;
+	}
+	
+	@Override
+	public void close() {
+		this.isClosed = true;
+		
+		this.thread.interrupt();
+	}
+
+}